@@ -0,0 +1,83 @@
+package study.datajpa.batch;
+
+import org.hibernate.Session;
+import org.hibernate.stat.SessionStatistics;
+
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+
+// >> 36. 청크 단위 작업
+// 한 트랜잭션 안에서 엔티티를 계속 쌓으면 flush 때마다 변경감지가 전체 컨텍스트를 훑기 때문에
+// 점점 느려진다(스냅샷도 커밋까지 메모리에 남는다).
+// N개 또는 M바이트(추정)마다 flush + clear 해서 영속성 컨텍스트 크기를 일정하게 유지한다.
+// 주의: clear 이후에는 이전에 받은 엔티티가 전부 준영속 상태가 된다. 연관관계로 다시 쓸 엔티티는 reference()로 다시 얻는다.
+public class ChunkedUnitOfWork {
+
+	private final EntityManager em;
+	private final int chunkSize;
+	private final long maxBytes;
+	private final FootprintEstimator estimator;
+
+	private long pendingEntities;
+	private long estimatedBytes;
+	private long totalEntities;
+	private long checkpoints;
+
+	ChunkedUnitOfWork(EntityManager em, int chunkSize, long maxBytes, FootprintEstimator estimator) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.em = em;
+		this.chunkSize = chunkSize;
+		this.maxBytes = maxBytes;
+		this.estimator = estimator;
+	}
+
+	public <T> T persist(T entity) {
+		em.persist(entity);
+		return track(entity);
+	}
+
+	// 조회해서 수정한 엔티티도 컨텍스트에 쌓이므로 등록해준다.
+	public <T> T track(T entity) {
+		pendingEntities++;
+		totalEntities++;
+		estimatedBytes += estimator.estimateBytes(entity);
+		if (pendingEntities >= chunkSize || (maxBytes > 0 && estimatedBytes >= maxBytes)) {
+			checkpoint();
+		}
+		return entity;
+	}
+
+	public <T> void forEach(Iterable<T> items, Consumer<T> work) {
+		for (T item : items) {
+			work.accept(item);
+			track(item);
+		}
+	}
+
+	public <T> T reference(Class<T> entityClass, Object id) {
+		return em.getReference(entityClass, id);
+	}
+
+	public void checkpoint() {
+		em.flush();
+		em.clear();
+		pendingEntities = 0;
+		estimatedBytes = 0;
+		checkpoints++;
+	}
+
+	// 남은 청크 반영 (커밋 시 flush 되긴 하지만 컨텍스트를 비워두고 싶을 때)
+	public void finish() {
+		if (pendingEntities > 0) {
+			checkpoint();
+		}
+	}
+
+	public PersistenceContextStats stats() {
+		SessionStatistics statistics = em.unwrap(Session.class).getStatistics();
+		return new PersistenceContextStats(statistics.getEntityCount(), statistics.getCollectionCount(),
+			pendingEntities, estimatedBytes, totalEntities, checkpoints);
+	}
+}
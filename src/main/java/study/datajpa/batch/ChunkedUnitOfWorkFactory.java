@@ -0,0 +1,47 @@
+package study.datajpa.batch;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import study.datajpa.cache.MemberLookupCache;
+import study.datajpa.memo.RequestQueryMemo;
+import study.datajpa.stats.TeamStatsStore;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.function.Function;
+
+// 배치 작업마다 하나씩 만들어 쓴다. (ChunkedUnitOfWork 는 스레드 안전하지 않음)
+@Component
+@RequiredArgsConstructor
+public class ChunkedUnitOfWorkFactory {
+
+	@PersistenceContext
+	private final EntityManager em;
+	private final EntityManagerFactory emf;
+	private final TeamStatsStore teamStatsStore;
+	private final MemberLookupCache memberLookupCache;
+
+	// 현재 트랜잭션에 묶인 영속성 컨텍스트를 사용하므로 @Transactional 안에서 호출해야 한다.
+	public ChunkedUnitOfWork begin(int chunkSize) {
+		return begin(chunkSize, 0, FootprintEstimator.DEFAULT);
+	}
+
+	public ChunkedUnitOfWork begin(int chunkSize, long maxBytes, FootprintEstimator estimator) {
+		return new ChunkedUnitOfWork(em, chunkSize, maxBytes, estimator);
+	}
+
+	// StatelessSession 은 엔티티 리스너를 부르지 않으므로 팀 통계는 전체 재집계 대상으로 돌리고 유저네임 캐시와 요청 메모는 비운다.
+	public <S, T> long stateless(String query, Class<S> sourceType, int fetchSize, int commitInterval,
+								 Function<S, T> transform) {
+		SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+		try {
+			return new StatelessPipeline<S, T>(sessionFactory, query, sourceType, fetchSize, commitInterval).run(transform);
+		} finally {
+			teamStatsStore.markAllDirty();
+			memberLookupCache.invalidateAll();
+			RequestQueryMemo.invalidateAllCurrent();
+		}
+	}
+}
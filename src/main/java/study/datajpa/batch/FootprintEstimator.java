@@ -0,0 +1,11 @@
+package study.datajpa.batch;
+
+// 영속성 컨텍스트에 올라간 엔티티 하나가 차지하는 메모리(엔티티 + 변경감지용 스냅샷) 추정치
+@FunctionalInterface
+public interface FootprintEstimator {
+
+	// 엔티티 객체, EntityEntry, 스냅샷 배열 정도를 대충 합친 값
+	FootprintEstimator DEFAULT = entity -> 512;
+
+	long estimateBytes(Object entity);
+}
@@ -0,0 +1,27 @@
+package study.datajpa.batch;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// 영속성 컨텍스트 크기 메트릭
+@Getter
+@ToString
+public class PersistenceContextStats {
+
+	private final int managedEntities;		// 지금 영속성 컨텍스트가 관리 중인 엔티티 수
+	private final int managedCollections;
+	private final long pendingEntities;		// 마지막 flush/clear 이후 등록된 엔티티 수
+	private final long estimatedBytes;		// 마지막 flush/clear 이후 추정 메모리
+	private final long totalEntities;
+	private final long checkpoints;			// flush + clear 횟수
+
+	public PersistenceContextStats(int managedEntities, int managedCollections, long pendingEntities,
+								   long estimatedBytes, long totalEntities, long checkpoints) {
+		this.managedEntities = managedEntities;
+		this.managedCollections = managedCollections;
+		this.pendingEntities = pendingEntities;
+		this.estimatedBytes = estimatedBytes;
+		this.totalEntities = totalEntities;
+		this.checkpoints = checkpoints;
+	}
+}
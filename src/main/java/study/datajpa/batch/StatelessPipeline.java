@@ -0,0 +1,75 @@
+package study.datajpa.batch;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.util.function.Function;
+
+// >> 36-1. StatelessSession 파이프라인 (읽기 -> 변환 -> 쓰기)
+// 영속성 컨텍스트, 1차 캐시, 변경감지, 엔티티 리스너가 전부 없다. 스냅샷을 만들지 않으므로 메모리가 일정하다.
+// 스프링 트랜잭션과 별개로 자체 트랜잭션을 열고 commitInterval 마다 커밋한다.
+public class StatelessPipeline<S, T> {
+
+	private final SessionFactory sessionFactory;
+	private final String query;
+	private final Class<S> sourceType;
+	private final int fetchSize;
+	private final int commitInterval;
+
+	StatelessPipeline(SessionFactory sessionFactory, String query, Class<S> sourceType, int fetchSize, int commitInterval) {
+		if (commitInterval <= 0) {
+			throw new IllegalArgumentException("commitInterval must be positive: " + commitInterval);
+		}
+		this.sessionFactory = sessionFactory;
+		this.query = query;
+		this.sourceType = sourceType;
+		this.fetchSize = fetchSize;
+		this.commitInterval = commitInterval;
+	}
+
+	// transform 이 null 을 반환하면 쓰지 않는다. id 가 없으면 insert, 있으면 update
+	// 커밋하면 커서가 닫히기 때문에 읽기 세션과 쓰기 세션을 나눈다.
+	public long run(Function<S, T> transform) {
+		long written = 0;
+		try (StatelessSession reader = sessionFactory.openStatelessSession();
+			 StatelessSession writer = sessionFactory.openStatelessSession()) {
+			Transaction readTx = reader.beginTransaction();
+			Transaction writeTx = writer.beginTransaction();
+			try (ScrollableResults results = reader.createQuery(query, sourceType)
+				.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY)) {
+				while (results.next()) {
+					@SuppressWarnings("unchecked")
+					T target = transform.apply((S) results.get(0));
+					if (target == null) {
+						continue;
+					}
+					if (sessionFactory.getPersistenceUnitUtil().getIdentifier(target) == null) {
+						writer.insert(target);
+					} else {
+						writer.update(target);
+					}
+					if (++written % commitInterval == 0) {
+						writeTx.commit();
+						writeTx = writer.beginTransaction();
+					}
+				}
+				writeTx.commit();
+			} catch (RuntimeException e) {
+				if (writeTx.isActive()) {
+					writeTx.rollback();
+				}
+				throw e;
+			} finally {
+				if (readTx.isActive()) {
+					readTx.rollback();
+				}
+			}
+		}
+		return written;
+	}
+}
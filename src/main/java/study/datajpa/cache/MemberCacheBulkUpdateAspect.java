@@ -0,0 +1,22 @@
+package study.datajpa.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// bulkAgePlus 같은 @Modifying 쿼리와 deleteAllInBatch 같은 JPQL 배치 삭제는 엔티티 리스너를 거치지 않고
+// 어떤 행이 바뀌었는지도 모르므로 캐시 전체를 비운다.
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MemberCacheBulkUpdateAspect {
+
+	private final MemberLookupCache memberLookupCache;
+
+	@AfterReturning("this(study.datajpa.repository.MemberRepository)"
+		+ " && (execution(@org.springframework.data.jpa.repository.Modifying * *(..)) || execution(* *InBatch(..)))")
+	public void afterBulkUpdate() {
+		memberLookupCache.invalidateAll();
+	}
+}
@@ -0,0 +1,20 @@
+package study.datajpa.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.member-cache")
+public class MemberCacheProperties {
+
+	private long maximumSize = 10_000;
+
+	// 리스너를 거치지 않는 변경(다른 노드, 네이티브 쿼리)에 대한 안전장치
+	private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+	// 한 트랜잭션에서 이보다 많은 유저네임이 바뀌면 커밋 후에 하나씩 지우지 않고 전체를 비운다.
+	private int invalidateAllThreshold = 1_000;
+}
@@ -0,0 +1,74 @@
+package study.datajpa.cache;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// >> 37-1. 유저네임 파생 finder 를 near-cache 에서
+// findMemberByUsername / findOptionalByUsername / findListByUsername / findByUsername 를 트랜잭션 밖에서 부르면
+// DB 에 가지 않고 캐시된 스냅샷으로 Member 를 만들어 돌려준다.
+// - 트랜잭션 안에서는 그대로 DB 조회 (변경감지, 같은 영속성 컨텍스트 안의 동일성이 필요하므로)
+// - 캐시에서 만든 Member 는 준영속이다. (OSIV 로 영속성 컨텍스트가 열려 있어도 거기에 들어가지 않는다)
+//   수정하려면 트랜잭션 안에서 다시 조회한다.
+// - team 은 getReference 프록시라서 원래 finder 처럼 id 는 바로, 나머지는 지연 로딩
+// 캐시 적중이면 DB 에 가지 않으므로 요청 메모 안쪽, admission control 바깥에서 실행한다.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class MemberFinderCacheAspect {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	private final MemberLookupCache memberLookupCache;
+
+	public MemberFinderCacheAspect(MemberLookupCache memberLookupCache) {
+		this.memberLookupCache = memberLookupCache;
+	}
+
+	@Around("this(study.datajpa.repository.MemberRepository) && args(username) && ("
+		+ "execution(* findMemberByUsername(String)) || execution(* findOptionalByUsername(String))"
+		+ " || execution(* findListByUsername(String)) || execution(* findByUsername(String)))")
+	public Object findByUsername(ProceedingJoinPoint joinPoint, String username) throws Throwable {
+		if (username == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+			return joinPoint.proceed();
+		}
+		List<Member> members = memberLookupCache.findByUsername(username).stream()
+			.map(this::toMember)
+			.collect(Collectors.toList());
+
+		Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+		if (List.class.isAssignableFrom(returnType)) {
+			return members;
+		}
+		// 단건 조회에 결과가 둘 이상이면 스프링 데이터 JPA 와 같은 예외
+		if (members.size() > 1) {
+			throw new IncorrectResultSizeDataAccessException(1, members.size());
+		}
+		Member member = members.isEmpty() ? null : members.get(0);
+		return returnType == Optional.class ? Optional.ofNullable(member) : member;
+	}
+
+	private Member toMember(MemberSnapshot snapshot) {
+		Member member = new Member(snapshot.getUsername(), snapshot.getAge());
+		member.setId(snapshot.getId());
+		if (snapshot.getTeamId() != null) {
+			member.setTeam(em.getReference(Team.class, snapshot.getTeamId()));
+		}
+		return member;
+	}
+}
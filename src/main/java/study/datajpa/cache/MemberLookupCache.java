@@ -0,0 +1,163 @@
+package study.datajpa.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.shard.Shards;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// >> 37. 유저네임 조회 near-cache (cache-aside)
+// findMemberByUsername / findOptionalByUsername / findListByUsername / findByUsername 는
+// MemberFinderCacheAspect 가 트랜잭션 밖에서 부를 때 여기서 꺼낸다. DTO 로 충분하면 직접 불러도 된다.
+// - Caffeine: 락 없는 동시성 맵 + W-TinyLFU 교체 정책, 크기 제한
+// - 같은 키에 동시에 miss가 나면 한 스레드만 DB를 조회하고 나머지는 그 결과를 기다린다. (single-flight)
+// - 값은 엔티티가 아니라 불변 스냅샷. 없는 유저네임도 빈 리스트로 캐시한다.
+// - 무효화: MemberEntityListener(save/delete/changeUsername), 팀 이름 변경/삭제(TeamEntityListener)와
+//   @Modifying 벌크 수정/배치 삭제 시 전체 비움
+// - 쓰기 트랜잭션 안에서는 캐시를 거치지 않고 바로 조회한다. (auto flush 된 커밋 전 데이터가 캐시에 들어가
+//   다른 스레드에 보이지 않도록)
+// - 샤딩을 켜면 유저네임으로는 샤드를 알 수 없으므로 모든 샤드에 물어본다.
+@Component
+@EnableConfigurationProperties(MemberCacheProperties.class)
+public class MemberLookupCache {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	private final Shards shards;
+	private final LoadingCache<String, List<MemberSnapshot>> cache;
+	private final int invalidateAllThreshold;
+
+	public MemberLookupCache(MemberCacheProperties properties, Shards shards) {
+		this.shards = shards;
+		this.invalidateAllThreshold = properties.getInvalidateAllThreshold();
+		this.cache = Caffeine.newBuilder()
+			.maximumSize(properties.getMaximumSize())
+			.expireAfterWrite(properties.getExpireAfterWrite())
+			.recordStats()
+			.build(this::load);
+	}
+
+	public List<MemberSnapshot> findByUsername(String username) {
+		return inWriteTransaction() ? load(username) : cache.get(username);
+	}
+
+	// 단건 조회 (결과가 두 개 이상이면 스프링 데이터 JPA와 같은 예외)
+	public Optional<MemberSnapshot> findOneByUsername(String username) {
+		List<MemberSnapshot> result = findByUsername(username);
+		if (result.size() > 1) {
+			throw new IncorrectResultSizeDataAccessException(1, result.size());
+		}
+		return result.stream().findFirst();
+	}
+
+	// 트랜잭션 안이면 지금 한 번, 트랜잭션이 끝난 뒤 한 번 더 비운다.
+	// (커밋 전에 다른 스레드가 옛날 값을 다시 채워 넣는 경우를 막기 위해)
+	public void invalidate(String username) {
+		if (username == null) {
+			return;
+		}
+		cache.invalidate(username);
+		PendingInvalidations pending = pendingInvalidations();
+		if (pending != null) {
+			pending.add(username);
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+		PendingInvalidations pending = pendingInvalidations();
+		if (pending != null) {
+			pending.all = true;
+		}
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private List<MemberSnapshot> load(String username) {
+		List<MemberSnapshot> result = new ArrayList<>();
+		shards.scatter(shard -> em.createQuery(
+				"select new study.datajpa.cache.MemberSnapshot(m.id, m.username, m.age, t.id, t.name)" +
+					" from Member m left join m.team t where m.username = :username", MemberSnapshot.class)
+			.setParameter("username", username)
+			.getResultList()).forEach(result::addAll);
+		return Collections.unmodifiableList(result);
+	}
+
+	private static boolean inWriteTransaction() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+			&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	// 트랜잭션마다 하나만 등록하고 유저네임을 모은다. (건마다 synchronization 을 등록하면
+	// 대량 insert/update 트랜잭션에서 커밋 때까지 그만큼의 객체가 쌓인다)
+	private PendingInvalidations pendingInvalidations() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		PendingInvalidations pending = (PendingInvalidations) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			pending = new PendingInvalidations();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(pending);
+		}
+		return pending;
+	}
+
+	// 모은 유저네임이 임계치를 넘으면 하나씩 지우는 대신 전체를 비운다.
+	private class PendingInvalidations implements TransactionSynchronization {
+
+		private final Set<String> usernames = new HashSet<>();
+		private boolean all;
+
+		void add(String username) {
+			if (all) {
+				return;
+			}
+			usernames.add(username);
+			if (usernames.size() > invalidateAllThreshold) {
+				all = true;
+				usernames.clear();
+			}
+		}
+
+		@Override
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(MemberLookupCache.this);
+		}
+
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(MemberLookupCache.this, this);
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(MemberLookupCache.this);
+			if (all) {
+				cache.invalidateAll();
+			} else {
+				cache.invalidateAll(usernames);
+			}
+		}
+	}
+}
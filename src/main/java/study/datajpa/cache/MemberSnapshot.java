@@ -0,0 +1,24 @@
+package study.datajpa.cache;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// 캐시에 들어가는 준영속 불변 스냅샷 (엔티티를 캐시에 넣으면 영속성 컨텍스트/지연로딩 문제가 생긴다)
+@Getter
+@ToString
+public class MemberSnapshot {
+
+	private final Long id;
+	private final String username;
+	private final int age;
+	private final Long teamId;
+	private final String teamName;
+
+	public MemberSnapshot(Long id, String username, int age, Long teamId, String teamName) {
+		this.id = id;
+		this.username = username;
+		this.age = age;
+		this.teamId = teamId;
+		this.teamName = teamName;
+	}
+}
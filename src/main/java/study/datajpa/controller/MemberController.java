@@ -0,0 +1,74 @@
+package study.datajpa.controller;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import study.datajpa.cache.MemberLookupCache;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.dto.MemberDto;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// >> 43. 부하 테스트 대상 API (레포지토리 메소드를 그대로 노출)
+// 엔티티를 그대로 반환하지 않고 MemberDto 로 바꿔서 내보낸다. (연관관계 무한루프, API 스펙이 엔티티에 묶이는 문제)
+@RestController
+@RequiredArgsConstructor
+public class MemberController {
+
+	private final MemberRepository memberRepository;
+	private final TeamRepository teamRepository;
+	private final MemberLookupCache memberLookupCache;
+
+	@GetMapping("/members/{id}")
+	public MemberDto findMember(@PathVariable("id") Long id) {
+		return memberRepository.findById(id)
+			.map(MemberDto::new)
+			.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "member not found: " + id));
+	}
+
+	// 유저네임 조회는 near-cache 에서 꺼낸다. (>> 37)
+	@GetMapping("/members")
+	public List<MemberDto> findByUsername(@RequestParam("username") String username) {
+		return memberLookupCache.findByUsername(username).stream()
+			.map(member -> new MemberDto(member.getId(), member.getUsername(), member.getTeamName()))
+			.collect(Collectors.toList());
+	}
+
+	// /members/page?age=10&page=0&size=20&sort=username,desc
+	@GetMapping("/members/page")
+	public Page<MemberDto> findPage(@RequestParam("age") int age, @PageableDefault(size = 20) Pageable pageable) {
+		return memberRepository.findPageByAge(age, pageable).map(MemberDto::new);
+	}
+
+	@PostMapping("/members")
+	@ResponseStatus(HttpStatus.CREATED)
+	public MemberDto create(@RequestBody CreateMemberRequest request) {
+		Team team = null;
+		if (request.getTeamId() != null) {
+			team = teamRepository.findById(request.getTeamId())
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "team not found: " + request.getTeamId()));
+		}
+		return new MemberDto(memberRepository.save(new Member(request.getUsername(), request.getAge(), team)));
+	}
+
+	@PostMapping("/members/bulk-age-plus")
+	public int bulkAgePlus(@RequestParam("age") int age) {
+		return memberRepository.bulkAgePlus(age);
+	}
+
+	@Data
+	static class CreateMemberRequest {
+		private String username;
+		private int age;
+		private Long teamId;
+	}
+}
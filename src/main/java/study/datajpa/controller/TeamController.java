@@ -0,0 +1,33 @@
+package study.datajpa.controller;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.stats.TeamStats;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+	private final TeamRepository teamRepository;
+
+	@PostMapping("/teams")
+	@ResponseStatus(HttpStatus.CREATED)
+	public Long create(@RequestBody CreateTeamRequest request) {
+		return teamRepository.save(new Team(request.getName())).getId();
+	}
+
+	// 팀 통계는 메모리에 유지되는 값이라 DB 를 거의 타지 않는다. (>> 34)
+	@GetMapping("/teams/{id}/stats")
+	public TeamStats stats(@PathVariable("id") Long id) {
+		return teamRepository.findTeamStats(id);
+	}
+
+	@Data
+	static class CreateTeamRequest {
+		private String name;
+	}
+}
@@ -0,0 +1,75 @@
+package study.datajpa.datasource;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// >> 33. Admission control (backpressure)
+// getConnection 에서 스레드가 보이지 않게 쌓이는 대신, 레포지토리 호출 입구에서
+// 1) 동시 실행 수를 세마포어로 제한하고 SLO 안에 못 들어오면 바로 실패
+// 2) 풀이 이미 밀리고 있으면 @LowPriority 조회는 기다리지 않고 버린다(shed)
+@Component
+public class AdmissionControl {
+
+	private final AdmissionProperties properties;
+	private final ConnectionPoolMetrics poolMetrics;
+	private final Semaphore permits;
+
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+
+	public AdmissionControl(AdmissionProperties properties, ConnectionPoolMetrics poolMetrics) {
+		this.properties = properties;
+		this.poolMetrics = poolMetrics;
+		this.permits = new Semaphore(properties.getMaxConcurrent(), true);
+	}
+
+	public void acquire(boolean lowPriority) {
+		if (lowPriority && isOverloaded()) {
+			shed.increment();
+			throw new AdmissionRejectedException("low priority read shed: pending=" + poolMetrics.getPendingThreads()
+				+ ", recentWait=" + poolMetrics.getRecentWaitMillis() + "ms");
+		}
+
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(properties.getSloMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		if (!acquired) {
+			rejected.increment();
+			throw new AdmissionRejectedException("repository call not admitted within " + properties.getSloMillis() + "ms");
+		}
+		admitted.increment();
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	public boolean isOverloaded() {
+		return poolMetrics.getPendingThreads() >= properties.getShedPendingThreshold()
+			|| poolMetrics.getRecentWaitMillis() > properties.getSloMillis();
+	}
+
+	public int getWaitingThreads() {
+		return permits.getQueueLength();
+	}
+
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	public long getShed() {
+		return shed.sum();
+	}
+}
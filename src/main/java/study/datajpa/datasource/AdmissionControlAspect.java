@@ -0,0 +1,41 @@
+package study.datajpa.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+
+// 레포지토리 호출 입구에서 AdmissionControl을 거치게 한다.
+// 레포지토리 안에서 다시 레포지토리를 부르는 경우는 바깥 호출에서 한 번만 입장 처리
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class AdmissionControlAspect {
+
+	private static final ThreadLocal<Boolean> ADMITTED = new ThreadLocal<>();
+
+	private final AdmissionProperties properties;
+	private final AdmissionControl admissionControl;
+
+	@Around("this(org.springframework.data.repository.Repository) || within(study.datajpa.repository.*JpaRepository)")
+	public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+		if (!properties.isEnabled() || ADMITTED.get() != null) {
+			return joinPoint.proceed();
+		}
+
+		MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+		boolean lowPriority = AnnotatedElementUtils.hasAnnotation(signature.getMethod(), LowPriority.class);
+
+		admissionControl.acquire(lowPriority);
+		ADMITTED.set(Boolean.TRUE);
+		try {
+			return joinPoint.proceed();
+		} finally {
+			ADMITTED.remove();
+			admissionControl.release();
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package study.datajpa.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.admission")
+public class AdmissionProperties {
+
+	private boolean enabled = true;
+
+	// 동시에 레포지토리 호출에 들어갈 수 있는 스레드 수 (보통 풀 크기와 맞춘다)
+	private int maxConcurrent = 10;
+
+	// 커넥션 대기 SLO. 이 시간 안에 입장하지 못하면 바로 실패시킨다.
+	private long sloMillis = 200;
+
+	// 풀 대기 스레드가 이 수 이상이면 @LowPriority 조회는 바로 버린다.
+	private int shedPendingThreshold = 2;
+}
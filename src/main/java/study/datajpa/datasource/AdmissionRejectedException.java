@@ -0,0 +1,13 @@
+package study.datajpa.datasource;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+// 커넥션 풀 SLO를 넘겨서 레포지토리 호출을 거절했을 때
+public class AdmissionRejectedException extends TransientDataAccessResourceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public AdmissionRejectedException(String msg) {
+		super(msg);
+	}
+}
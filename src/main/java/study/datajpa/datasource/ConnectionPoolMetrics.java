@@ -0,0 +1,119 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+// >> 32. 커넥션 풀 메트릭
+// Hikari가 커넥션을 빌려줄 때마다 대기시간(acquire)을 넘겨주므로 여기서 히스토그램으로 쌓는다.
+// active/idle/pending 게이지는 Hikari의 PoolStats를 그대로 읽는다. (샤드 풀처럼 풀이 여러 개면 합계)
+@Component
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+	private final WaitTimeHistogram acquireTime = new WaitTimeHistogram();
+	private final WaitTimeHistogram usageTime = new WaitTimeHistogram();
+	private final LongAdder timeouts = new LongAdder();
+	// 최근 대기시간 지수이동평균 (admission control 판단용)
+	// 새 샘플이 없어도 시간이 지나면 반감기마다 절반으로 줄어든다. 커넥션을 잡지 않는 호출만 들어오는 동안
+	// (예: shed 된 @LowPriority 조회) 예전 스파이크 값이 그대로 남아 계속 shed 하지 않도록.
+	static final long RECENT_WAIT_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private final AtomicReference<WaitSample> recentWait = new AtomicReference<>(new WaitSample(0, 0));
+
+	private final Map<String, PoolStats> poolStats = new ConcurrentHashMap<>();
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		if (poolStats != null) {
+			this.poolStats.put(poolName, poolStats);
+		}
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				acquireTime.record(elapsedAcquiredNanos);
+				long now = nanoTime();
+				recentWait.updateAndGet(prev -> {
+					long decayed = prev.decayedAt(now);
+					return new WaitSample(decayed + (elapsedAcquiredNanos - decayed) / 8, now);
+				});
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				usageTime.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				timeouts.increment();
+			}
+		};
+	}
+
+	public WaitTimeHistogram getAcquireTime() {
+		return acquireTime;
+	}
+
+	public WaitTimeHistogram getUsageTime() {
+		return usageTime;
+	}
+
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	public long getRecentWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(recentWait.get().decayedAt(nanoTime()));
+	}
+
+	long nanoTime() {
+		return System.nanoTime();
+	}
+
+	// 풀이 아직 시작되지 않았으면 0
+	public int getActiveConnections() {
+		return sum(PoolStats::getActiveConnections);
+	}
+
+	public int getIdleConnections() {
+		return sum(PoolStats::getIdleConnections);
+	}
+
+	public int getPendingThreads() {
+		return sum(PoolStats::getPendingThreads);
+	}
+
+	public int getTotalConnections() {
+		return sum(PoolStats::getTotalConnections);
+	}
+
+	private int sum(ToIntFunction<PoolStats> gauge) {
+		return poolStats.values().stream().mapToInt(gauge).sum();
+	}
+
+	private static class WaitSample {
+
+		private final long waitNanos;
+		private final long sampledAt;
+
+		WaitSample(long waitNanos, long sampledAt) {
+			this.waitNanos = waitNanos;
+			this.sampledAt = sampledAt;
+		}
+
+		long decayedAt(long now) {
+			long elapsed = now - sampledAt;
+			if (waitNanos == 0 || elapsed <= 0) {
+				return waitNanos;
+			}
+			return (long) (waitNanos * Math.pow(0.5, (double) elapsed / RECENT_WAIT_HALF_LIFE_NANOS));
+		}
+	}
+}
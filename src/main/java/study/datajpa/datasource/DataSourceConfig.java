@@ -0,0 +1,28 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class DataSourceConfig {
+
+	// p6spy가 DataSource를 감싸기 전(초기화 전)에 Hikari에 메트릭 트래커를 등록한다.
+	// BeanPostProcessor는 static으로 등록해야 다른 빈보다 먼저 만들어진다.
+	@Bean
+	public static BeanPostProcessor hikariMetricsPostProcessor(ObjectProvider<ConnectionPoolMetrics> poolMetrics) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource) {
+					((HikariDataSource) bean).setMetricsTrackerFactory(poolMetrics.getObject());
+				}
+				return bean;
+			}
+		};
+	}
+}
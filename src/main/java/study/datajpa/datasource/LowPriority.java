@@ -0,0 +1,12 @@
+package study.datajpa.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 풀이 밀릴 때 먼저 버려도 되는 조회 메소드에 붙인다.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LowPriority {
+}
@@ -0,0 +1,59 @@
+package study.datajpa.datasource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// >> 32-1. 커넥션 대기시간 히스토그램
+// 고정 버킷(ms)에 LongAdder로 카운트만 올리기 때문에 getConnection 경로에 락이 없다.
+// 백분위는 해당 버킷의 상한값으로 근사한다.
+public class WaitTimeHistogram {
+
+	private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000};
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+
+	public WaitTimeHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int index = 0;
+		while (index < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[index]) {
+			index++;
+		}
+		buckets[index].increment();
+		count.increment();
+		totalNanos.add(nanos);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public double meanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000;
+	}
+
+	// 상한이 없는 마지막 버킷은 Long.MAX_VALUE 로 표시
+	public long percentileMillis(double percentile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(n * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i].sum();
+			if (seen >= rank) {
+				return i < BOUNDS_MILLIS.length ? BOUNDS_MILLIS[i] : Long.MAX_VALUE;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+}
@@ -1,17 +1,24 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import study.datajpa.id.BlockSequenceGenerator;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(MemberEntityListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 // >> 03. 가급적이면 ToString은 쓰지 않는게 좋다.
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-	@Id @GeneratedValue
+	// >> 42-1. member_seq 시퀀스에서 블록 단위로 ID 할당 (persist 마다 시퀀스를 부르지 않는다)
+	@Id @GeneratedValue(generator = "member_seq")
+	@GenericGenerator(name = "member_seq", strategy = "study.datajpa.id.BlockSequenceGenerator",
+		parameters = @Parameter(name = BlockSequenceGenerator.SEQUENCE_PARAM, value = "member_seq"))
 	@Column(name = "member_id")
 	private Long id;
 	private String username;
@@ -25,6 +32,16 @@ public class Member {
 	@JoinColumn(name = "team_id")
 	private Team team;
 
+	// >> 35-1. 마지막으로 DB와 맞춘 상태 (MemberEntityListener 에서 변경 전 값 비교용)
+	@Transient @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private boolean synced;
+	@Transient @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private Long syncedTeamId;
+	@Transient @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private int syncedAge;
+	@Transient @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private String syncedUsername;
+
 	// JPA 표준스펙에 엔티티는 default 생성자 필요
 	// JPA가 프록시 해서 강제로 객체 만들어야하는데 private로 하면 만들지 못함
 	// 그래서 protected 까지 열어준다.
@@ -61,4 +78,32 @@ public class Member {
 		this.team = team;
 		team.getMembers().add(this);
 	}
+
+	// 프록시 팀이어도 id 조회는 초기화를 일으키지 않는다.
+	Long teamId() {
+		return team == null ? null : team.getId();
+	}
+
+	void markSynced() {
+		this.synced = true;
+		this.syncedTeamId = teamId();
+		this.syncedAge = age;
+		this.syncedUsername = username;
+	}
+
+	boolean isSynced() {
+		return synced;
+	}
+
+	Long syncedTeamId() {
+		return syncedTeamId;
+	}
+
+	int syncedAge() {
+		return syncedAge;
+	}
+
+	String syncedUsername() {
+		return syncedUsername;
+	}
 }
@@ -0,0 +1,75 @@
+package study.datajpa.entity;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.datajpa.cache.MemberLookupCache;
+import study.datajpa.stats.TeamStatsStore;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Objects;
+
+// >> 35. 엔티티 리스너
+// Member 가 DB와 동기화되는 시점(insert/update/delete)마다 팀 통계를 증분 갱신하고 유저네임 캐시를 무효화한다.
+// (요청 메모는 모든 엔티티에 대해 RequestQueryMemoEventListener 가 지운다)
+// (변경감지로 나가는 update 는 레포지토리 save 를 거치지 않기 때문에 여기서 잡는다)
+// 스프링 부트가 하이버네이트에 SpringBeanContainer를 넣어주기 때문에 생성자 주입이 된다.
+// 리스너는 EntityManagerFactory 생성 중에 만들어지므로 EntityManager가 필요한 빈은 ObjectProvider로 나중에 꺼낸다.
+public class MemberEntityListener {
+
+	private final TeamStatsStore teamStatsStore;
+	private final ObjectProvider<MemberLookupCache> memberLookupCache;
+
+	public MemberEntityListener(TeamStatsStore teamStatsStore, ObjectProvider<MemberLookupCache> memberLookupCache) {
+		this.teamStatsStore = teamStatsStore;
+		this.memberLookupCache = memberLookupCache;
+	}
+
+	@PostLoad
+	public void postLoad(Member member) {
+		member.markSynced();
+	}
+
+	@PostPersist
+	public void postPersist(Member member) {
+		// 없는 유저네임도 빈 결과로 캐시되어 있을 수 있다.
+		memberLookupCache.getObject().invalidate(member.getUsername());
+		teamStatsStore.memberAdded(member.teamId(), member.getAge());
+		member.markSynced();
+	}
+
+	// changeTeam 으로 팀이 바뀌거나 나이가 바뀌면 이전 팀에서 빼고 새 팀에 더한다.
+	@PostUpdate
+	public void postUpdate(Member member) {
+		invalidateUsernames(member);
+		if (!member.isSynced()) {
+			if (member.teamId() != null) {
+				teamStatsStore.markDirty(member.teamId());
+			}
+		} else if (!Objects.equals(member.syncedTeamId(), member.teamId()) || member.syncedAge() != member.getAge()) {
+			teamStatsStore.memberRemoved(member.syncedTeamId(), member.syncedAge());
+			teamStatsStore.memberAdded(member.teamId(), member.getAge());
+		}
+		member.markSynced();
+	}
+
+	@PostRemove
+	public void postRemove(Member member) {
+		invalidateUsernames(member);
+		if (member.isSynced()) {
+			teamStatsStore.memberRemoved(member.syncedTeamId(), member.syncedAge());
+		} else if (member.teamId() != null) {
+			teamStatsStore.markDirty(member.teamId());
+		}
+	}
+
+	// changeUsername 이면 이전 이름과 새 이름 둘 다
+	private void invalidateUsernames(Member member) {
+		MemberLookupCache cache = memberLookupCache.getObject();
+		cache.invalidate(member.getUsername());
+		if (!Objects.equals(member.syncedUsername(), member.getUsername())) {
+			cache.invalidate(member.syncedUsername());
+		}
+	}
+}
@@ -1,18 +1,24 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import study.datajpa.id.BlockSequenceGenerator;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(TeamEntityListener.class)
 @Getter	@Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-	@Id @GeneratedValue
+	@Id @GeneratedValue(generator = "team_seq")
+	@GenericGenerator(name = "team_seq", strategy = "study.datajpa.id.BlockSequenceGenerator",
+		parameters = @Parameter(name = BlockSequenceGenerator.SEQUENCE_PARAM, value = "team_seq"))
 	@Column(name = "team_id")
 	private Long id;
 	private String name;
@@ -0,0 +1,24 @@
+package study.datajpa.entity;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.datajpa.cache.MemberLookupCache;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// 유저네임 캐시 스냅샷에 팀 이름이 들어 있으므로 팀 이름이 바뀌거나 팀이 지워지면 캐시를 비운다.
+// 어느 멤버가 그 팀인지 캐시만 보고는 모르므로 전체를 비운다. (팀 변경은 드물다)
+public class TeamEntityListener {
+
+	private final ObjectProvider<MemberLookupCache> memberLookupCache;
+
+	public TeamEntityListener(ObjectProvider<MemberLookupCache> memberLookupCache) {
+		this.memberLookupCache = memberLookupCache;
+	}
+
+	@PostUpdate
+	@PostRemove
+	public void teamChanged(Team team) {
+		memberLookupCache.getObject().invalidateAll();
+	}
+}
@@ -0,0 +1,19 @@
+package study.datajpa.export;
+
+public enum ExportFormat {
+
+	// member_id,username,age,team_name
+	CSV("csv"),
+	// [long id][int age][int len][username utf-8][int len or -1][team name utf-8] 반복, 빅엔디안
+	BINARY("bin");
+
+	private final String extension;
+
+	ExportFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+}
@@ -0,0 +1,27 @@
+package study.datajpa.export;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ExportOptions {
+
+	@Builder.Default
+	private final ExportFormat format = ExportFormat.CSV;
+
+	// ID 범위로 나눌 파티션 수
+	@Builder.Default
+	private final int partitions = 16;
+
+	// 동시에 읽는 파티션 수. 파티션마다 커넥션을 하나씩 잡으므로 풀 크기보다 작게 잡는다.
+	@Builder.Default
+	private final int parallelism = 4;
+
+	@Builder.Default
+	private final int fetchSize = 1_000;
+
+	// 중단된 export 를 이어서 할 때 이미 끝난 파티션 파일은 건너뛴다. (끝까지 완료된 export 는 새로 뽑는다)
+	@Builder.Default
+	private final boolean resume = true;
+}
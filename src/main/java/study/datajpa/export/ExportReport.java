@@ -0,0 +1,35 @@
+package study.datajpa.export;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Getter
+@ToString
+public class ExportReport {
+
+	private final long rows;
+	private final long bytes;
+	private final int exportedPartitions;
+	private final int skippedPartitions;
+	private final Duration elapsed;
+
+	public ExportReport(long rows, long bytes, int exportedPartitions, int skippedPartitions, Duration elapsed) {
+		this.rows = rows;
+		this.bytes = bytes;
+		this.exportedPartitions = exportedPartitions;
+		this.skippedPartitions = skippedPartitions;
+		this.elapsed = elapsed;
+	}
+
+	public double getRowsPerSecond() {
+		long millis = Math.max(1, elapsed.toMillis());
+		return rows * 1000.0 / millis;
+	}
+
+	public double getMegabytesPerSecond() {
+		long millis = Math.max(1, elapsed.toMillis());
+		return bytes / 1024.0 / 1024.0 * 1000.0 / millis;
+	}
+}
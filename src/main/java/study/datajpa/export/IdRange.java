@@ -0,0 +1,37 @@
+package study.datajpa.export;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// shard 샤드의 [from, to) 범위
+@Getter
+@ToString
+class IdRange {
+
+	private final int shard;
+	private final long from;
+	private final long to;
+
+	IdRange(int shard, long from, long to) {
+		this.shard = shard;
+		this.from = from;
+		this.to = to;
+	}
+
+	// min ~ max 를 partitions 개로 고르게 나눈다. (ID 가 비어 있는 구간은 빈 파티션이 된다)
+	static List<IdRange> split(int shard, long minId, long maxId, int partitions) {
+		List<IdRange> ranges = new ArrayList<>(partitions);
+		long span = maxId - minId + 1;
+		long step = Math.max(1, (span + partitions - 1) / partitions);
+		for (long from = minId; from <= maxId; from += step) {
+			ranges.add(new IdRange(shard, from, Math.min(from + step, maxId + 1)));
+		}
+		if (ranges.isEmpty()) {
+			ranges.add(new IdRange(shard, minId, minId));
+		}
+		return ranges;
+	}
+}
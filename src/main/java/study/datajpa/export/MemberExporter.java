@@ -0,0 +1,283 @@
+package study.datajpa.export;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import study.datajpa.shard.Shards;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// >> 38. Member 병렬 파티션 export
+// findMemberDto/findAll 로 전부 메모리에 올린 뒤 JSON 으로 내보내는 대신
+// 1) member_id 범위로 파티션을 나누고
+// 2) 파티션마다 커넥션 하나로 forward-only 커서를 열어 fetchSize 만큼씩 흘려 읽고 (엔티티/영속성 컨텍스트 없음)
+// 3) ByteBuffer 에 바로 인코딩해서 FileChannel 로 쓴다.
+// 파티션 파일은 .part 로 쓰다가 끝나면 이름을 바꾸므로, 중간에 죽으면 끝난 파티션은 건너뛰고 다시 시작할 수 있다.
+// 전부 끝나면 manifest 에 completed 를 남긴다. 끝난 export 디렉토리에 다시 실행하면 처음부터 새로 뽑는다.
+// 샤딩을 켜면 샤드마다 ID 범위를 따로 나눈다. (파티션 파일 번호는 샤드를 이어서 매긴다)
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberExporter {
+
+	private static final String MANIFEST = "export.manifest";
+	private static final String COMPLETED = "completed";
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private static final String PARTITION_QUERY =
+		"select m.member_id, m.username, m.age, t.name from member m left join team t on m.team_id = t.team_id" +
+			" where m.member_id >= ? and m.member_id < ? order by m.member_id";
+
+	private final Shards shards;
+
+	public ExportReport export(Path directory, ExportOptions options) {
+		long startNanos = System.nanoTime();
+		try {
+			Files.createDirectories(directory);
+			List<IdRange> ranges = planPartitions(directory, options);
+
+			AtomicLong rows = new AtomicLong();
+			AtomicLong bytes = new AtomicLong();
+			AtomicInteger exported = new AtomicInteger();
+			AtomicInteger skipped = new AtomicInteger();
+
+			// 한 파티션이 실패하면 나머지는 다음 행에서 멈춘다.
+			AtomicBoolean aborted = new AtomicBoolean();
+			ExecutorService pool = Executors.newFixedThreadPool(options.getParallelism());
+			List<Future<?>> futures = new ArrayList<>();
+			try {
+				for (int i = 0; i < ranges.size(); i++) {
+					int index = i;
+					futures.add(pool.submit(() -> {
+						Path target = partitionFile(directory, index, options.getFormat());
+						if (options.isResume() && Files.exists(target)) {
+							skipped.incrementAndGet();
+							return;
+						}
+						long[] written = exportPartition(ranges.get(index), target, options, aborted);
+						rows.addAndGet(written[0]);
+						bytes.addAndGet(written[1]);
+						exported.incrementAndGet();
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (ExecutionException | InterruptedException | RuntimeException e) {
+				// 실패한 뒤에도 다른 파티션이 커넥션을 잡고 계속 읽지 않도록 멈추고, 끝날 때까지 기다린다.
+				aborted.set(true);
+				futures.forEach(future -> future.cancel(true));
+				throw e;
+			} finally {
+				shutdown(pool);
+			}
+			markCompleted(directory);
+
+			ExportReport report = new ExportReport(rows.get(), bytes.get(), exported.get(), skipped.get(),
+				Duration.ofNanos(System.nanoTime() - startNanos));
+			log.info("member export finished: {} rows, {} partitions ({} skipped), {} rows/s, {} MB/s",
+				report.getRows(), report.getExportedPartitions(), report.getSkippedPartitions(),
+				String.format("%.0f", report.getRowsPerSecond()), String.format("%.1f", report.getMegabytesPerSecond()));
+			return report;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("member export interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("member export failed", e.getCause());
+		}
+	}
+
+	// 이어서 하는 경우 처음 나눈 범위를 그대로 써야 하므로 manifest 에 남겨둔다.
+	private List<IdRange> planPartitions(Path directory, ExportOptions options) throws IOException {
+		Path manifestFile = directory.resolve(MANIFEST);
+		Properties manifest = new Properties();
+		if (options.isResume() && Files.exists(manifestFile)) {
+			try (Reader reader = Files.newBufferedReader(manifestFile)) {
+				manifest.load(reader);
+			}
+		}
+		// 이어서 할 게 없거나, 이미 끝난 export 면 새로 나눈다.
+		if (manifest.isEmpty() || Boolean.parseBoolean(manifest.getProperty(COMPLETED))) {
+			manifest.clear();
+			manifest.setProperty("shards", String.valueOf(shards.count()));
+			for (int shard = 0; shard < shards.count(); shard++) {
+				long[] minMax = queryIdRange(shard);
+				manifest.setProperty("minId." + shard, String.valueOf(minMax[0]));
+				manifest.setProperty("maxId." + shard, String.valueOf(minMax[1]));
+			}
+			manifest.setProperty("partitions", String.valueOf(options.getPartitions()));
+			manifest.setProperty("format", options.getFormat().name());
+			try (Writer writer = Files.newBufferedWriter(manifestFile)) {
+				manifest.store(writer, "member export");
+			}
+			deletePartitionFiles(directory);
+		}
+
+		if (!manifest.getProperty("format").equals(options.getFormat().name())) {
+			throw new IllegalArgumentException("export in " + directory + " was started as " + manifest.getProperty("format"));
+		}
+		if (Integer.parseInt(manifest.getProperty("shards")) != shards.count()) {
+			throw new IllegalArgumentException("export in " + directory + " was started with "
+				+ manifest.getProperty("shards") + " shards");
+		}
+		int partitions = Integer.parseInt(manifest.getProperty("partitions"));
+		List<IdRange> ranges = new ArrayList<>();
+		for (int shard = 0; shard < shards.count(); shard++) {
+			long minId = Long.parseLong(manifest.getProperty("minId." + shard));
+			long maxId = Long.parseLong(manifest.getProperty("maxId." + shard));
+			ranges.addAll(IdRange.split(shard, minId, maxId, partitions));
+		}
+		return ranges;
+	}
+
+	private static void markCompleted(Path directory) throws IOException {
+		Path manifestFile = directory.resolve(MANIFEST);
+		Properties manifest = new Properties();
+		try (Reader reader = Files.newBufferedReader(manifestFile)) {
+			manifest.load(reader);
+		}
+		manifest.setProperty(COMPLETED, "true");
+		try (Writer writer = Files.newBufferedWriter(manifestFile)) {
+			manifest.store(writer, "member export");
+		}
+	}
+
+	private static void shutdown(ExecutorService pool) {
+		pool.shutdownNow();
+		try {
+			if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+				log.warn("member export partitions did not stop within 30s");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private long[] queryIdRange(int shard) {
+		DataSource dataSource = shards.dataSource(shard);
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try (PreparedStatement statement = connection.prepareStatement("select min(member_id), max(member_id) from member");
+			 ResultSet rs = statement.executeQuery()) {
+			rs.next();
+			return new long[]{rs.getLong(1), rs.getLong(2)};
+		} catch (SQLException e) {
+			throw new DataAccessResourceFailureException("could not read member id range of shard " + shard, e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	// {행 수, 바이트 수}
+	private long[] exportPartition(IdRange range, Path target, ExportOptions options, AtomicBoolean aborted) {
+		RowEncoder encoder = RowEncoder.of(options.getFormat());
+		Path tmp = target.resolveSibling(target.getFileName() + ".part");
+		long rows = 0;
+		long bytes = 0;
+
+		try (Connection connection = shards.dataSource(range.getShard()).getConnection();
+			 FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				 StandardOpenOption.TRUNCATE_EXISTING)) {
+			connection.setReadOnly(true);
+			// 드라이버가 커서를 유지하도록 트랜잭션 안에서 읽는다.
+			connection.setAutoCommit(false);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+			try (PreparedStatement statement = connection.prepareStatement(PARTITION_QUERY,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				statement.setFetchSize(options.getFetchSize());
+				statement.setLong(1, range.getFrom());
+				statement.setLong(2, range.getTo());
+				try (ResultSet rs = statement.executeQuery()) {
+					while (rs.next()) {
+						if (aborted.get()) {
+							throw new CancellationException("member export aborted");
+						}
+						long id = rs.getLong(1);
+						String username = rs.getString(2);
+						int age = rs.getInt(3);
+						String teamName = rs.getString(4);
+						while (!encoder.encode(buffer, id, username, age, teamName)) {
+							if (buffer.position() == 0) {
+								throw new IllegalStateException("row " + id + " does not fit in export buffer");
+							}
+							bytes += drain(buffer, channel);
+						}
+						rows++;
+					}
+				}
+			} finally {
+				connection.rollback();
+			}
+			bytes += drain(buffer, channel);
+			channel.force(false);
+		} catch (SQLException e) {
+			throw new DataAccessResourceFailureException("could not export member partition " + range, e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		try {
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new long[]{rows, bytes};
+	}
+
+	private static long drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		long written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+		return written;
+	}
+
+	private static Path partitionFile(Path directory, int index, ExportFormat format) {
+		return directory.resolve(String.format("members-%05d.%s", index, format.getExtension()));
+	}
+
+	private static void deletePartitionFiles(Path directory) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "members-*")) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package study.datajpa.export;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// 한 행을 ByteBuffer 에 바로 쓴다. 버퍼가 모자라면 false 를 돌려주고 호출하는 쪽에서 비운 뒤 다시 쓴다.
+abstract class RowEncoder {
+
+	abstract boolean encode(ByteBuffer buffer, long id, String username, int age, String teamName);
+
+	static RowEncoder of(ExportFormat format) {
+		return format == ExportFormat.CSV ? new Csv() : new Binary();
+	}
+
+	static class Csv extends RowEncoder {
+
+		@Override
+		boolean encode(ByteBuffer buffer, long id, String username, int age, String teamName) {
+			int start = buffer.position();
+			try {
+				putDigits(buffer, id);
+				buffer.put((byte) ',');
+				putText(buffer, username);
+				buffer.put((byte) ',');
+				putDigits(buffer, age);
+				buffer.put((byte) ',');
+				putText(buffer, teamName);
+				buffer.put((byte) '\n');
+				return true;
+			} catch (BufferOverflowException e) {
+				buffer.position(start);
+				return false;
+			}
+		}
+
+		// Long.toString 없이 자릿수만큼 바로 쓴다.
+		private static void putDigits(ByteBuffer buffer, long value) {
+			if (value < 0) {
+				buffer.put((byte) '-');
+				value = -value;
+			}
+			long divisor = 1;
+			while (value / divisor >= 10) {
+				divisor *= 10;
+			}
+			for (; divisor > 0; divisor /= 10) {
+				buffer.put((byte) ('0' + (value / divisor) % 10));
+			}
+		}
+
+		// null 은 빈 칸, 콤마/따옴표/줄바꿈이 있으면 따옴표로 감싼다.
+		private static void putText(ByteBuffer buffer, String value) {
+			if (value == null) {
+				return;
+			}
+			boolean quote = false;
+			for (int i = 0; i < value.length() && !quote; i++) {
+				char c = value.charAt(i);
+				quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+			}
+			byte[] bytes = (quote ? '"' + value.replace("\"", "\"\"") + '"' : value).getBytes(StandardCharsets.UTF_8);
+			buffer.put(bytes);
+		}
+	}
+
+	static class Binary extends RowEncoder {
+
+		@Override
+		boolean encode(ByteBuffer buffer, long id, String username, int age, String teamName) {
+			byte[] name = username == null ? null : username.getBytes(StandardCharsets.UTF_8);
+			byte[] team = teamName == null ? null : teamName.getBytes(StandardCharsets.UTF_8);
+			int size = 8 + 4 + 4 + (name == null ? 0 : name.length) + 4 + (team == null ? 0 : team.length);
+			if (buffer.remaining() < size) {
+				return false;
+			}
+			buffer.putLong(id);
+			buffer.putInt(age);
+			putBytes(buffer, name);
+			putBytes(buffer, team);
+			return true;
+		}
+
+		private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+			if (bytes == null) {
+				buffer.putInt(-1);
+				return;
+			}
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package study.datajpa.id;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import study.datajpa.shard.ShardContext;
+import study.datajpa.shard.ShardIdGenerator;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+// >> 42. 블록 단위 ID 할당
+// 기본 @GeneratedValue 는 hibernate_sequence 를 increment 1 로 써서 persist 마다 시퀀스를 한 번씩 부르고,
+// 모든 엔티티/모든 스레드가 시퀀스 하나에 줄을 선다.
+// 여기서는 엔티티마다 시퀀스를 따로 두고 increment 를 블록 크기로 잡아 pooled-lo 로 쓴다.
+// - 시퀀스 값 v 를 받으면 [v, v + blockSize) 를 이 노드가 메모리에서 나눠준다 (블록당 DB 왕복 1번)
+// - 노드가 여러 개여도 각자 다른 v 를 받으므로 겹치지 않는다.
+// - 노드가 내려가면 쓰다 만 블록의 나머지는 비어 있는 번호로 남는다.
+// 샤딩을 켜면 샤드마다 시퀀스가 따로라서 ID 가 겹치므로, 시퀀스 대신 지금 샤드(ShardContext) 번호가 들어간 ID 를 쓴다.
+public class BlockSequenceGenerator extends SequenceStyleGenerator {
+
+	public static final String BLOCK_SIZE_SETTING = "datajpa.id.block-size";
+	public static final String SHARD_ID_GENERATOR_SETTING = "datajpa.shard.id-generator";
+	public static final int DEFAULT_BLOCK_SIZE = 50;
+
+	private ShardIdGenerator shardIds;
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+		int blockSize = ConfigurationHelper.getInt(BLOCK_SIZE_SETTING, settings, DEFAULT_BLOCK_SIZE);
+		params.putIfAbsent(INCREMENT_PARAM, String.valueOf(blockSize));
+		params.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+		shardIds = (ShardIdGenerator) settings.get(SHARD_ID_GENERATOR_SETTING);
+		super.configure(type, params, serviceRegistry);
+	}
+
+	@Override
+	public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+		return shardIds != null ? shardIds.next(ShardContext.current()) : super.generate(session, object);
+	}
+}
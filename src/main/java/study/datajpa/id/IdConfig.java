@@ -0,0 +1,19 @@
+package study.datajpa.id;
+
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(IdProperties.class)
+public class IdConfig {
+
+	// 하이버네이트 ID 생성기(BlockSequenceGenerator)와 JDBC 벌크 작업(SequenceBlockAllocator)이 같은 블록 크기를 쓰도록
+	// 스프링 설정값을 하이버네이트 설정으로 넘겨준다.
+	@Bean
+	public HibernatePropertiesCustomizer idBlockSizeCustomizer(IdProperties properties) {
+		return hibernateProperties ->
+			hibernateProperties.put(BlockSequenceGenerator.BLOCK_SIZE_SETTING, properties.getBlockSize());
+	}
+}
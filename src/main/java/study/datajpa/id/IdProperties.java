@@ -0,0 +1,14 @@
+package study.datajpa.id;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.id")
+public class IdProperties {
+
+	// 시퀀스 한 번에 가져오는 ID 개수 (= DB 시퀀스의 increment by)
+	// 이미 만들어진 시퀀스가 있으면 그 increment 와 같아야 한다. (다르면 하이버네이트가 시작할 때 MappingException)
+	private int blockSize = BlockSequenceGenerator.DEFAULT_BLOCK_SIZE;
+}
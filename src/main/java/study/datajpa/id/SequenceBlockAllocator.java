@@ -0,0 +1,54 @@
+package study.datajpa.id;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// JPA 를 거치지 않는 JDBC 벌크 작업용 pooled-lo 할당기 (BlockSequenceGenerator 와 같은 시퀀스/블록 크기)
+// 필요한 블록 수만큼 시퀀스 값을 한 번의 쿼리로 받아온다. (H2: 행마다 next value 가 새로 평가된다)
+// 쓰다 남은 블록은 다음 fill 에서 이어서 쓴다. 스레드마다 하나씩 만들어 쓴다.
+public class SequenceBlockAllocator {
+
+	private final String blocksSql;
+	private final int blockSize;
+
+	// 현재 블록에서 아직 안 쓴 구간 [next, end)
+	private long next;
+	private long end;
+
+	public SequenceBlockAllocator(String sequenceName, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+		}
+		this.blocksSql = "select next value for " + sequenceName + " from system_range(1, ?)";
+		this.blockSize = blockSize;
+	}
+
+	public void fill(Connection connection, long[] ids, int count) throws SQLException {
+		int filled = 0;
+		while (filled < count && next < end) {
+			ids[filled++] = next++;
+		}
+		if (filled == count) {
+			return;
+		}
+		int blocks = (count - filled + blockSize - 1) / blockSize;
+		try (PreparedStatement statement = connection.prepareStatement(blocksSql)) {
+			statement.setInt(1, blocks);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					long lo = rs.getLong(1);
+					next = lo;
+					end = lo + blockSize;
+					while (filled < count && next < end) {
+						ids[filled++] = next++;
+					}
+				}
+			}
+		}
+		if (filled < count) {
+			throw new SQLException("sequence returned fewer blocks than requested: " + blocks);
+		}
+	}
+}
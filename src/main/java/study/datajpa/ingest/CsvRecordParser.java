@@ -0,0 +1,90 @@
+package study.datajpa.ingest;
+
+import java.nio.ByteBuffer;
+
+// username,age,team_name
+class CsvRecordParser extends RecordParser {
+
+	private static final int ERROR = -1;
+
+	@Override
+	String parse(ByteBuffer buffer, int start, int end, long lineNumber, RowBatch batch) {
+		int arenaMark = batch.arenaSize;
+
+		int usernameOffset = batch.arenaSize;
+		int pos = copyField(buffer, start, end, batch);
+		int usernameLength = batch.arenaSize - usernameOffset;
+		if (pos == ERROR) {
+			return reject(batch, arenaMark, "unterminated quote");
+		}
+		if (usernameLength == 0) {
+			return reject(batch, arenaMark, "empty username");
+		}
+		if (pos >= end) {
+			return reject(batch, arenaMark, "missing age");
+		}
+
+		int ageStart = ++pos;
+		while (pos < end && buffer.get(pos) != ',') {
+			pos++;
+		}
+		int age = parseAge(buffer, ageStart, pos);
+		if (age < 0) {
+			return reject(batch, arenaMark, "invalid age");
+		}
+
+		int teamOffset = batch.arenaSize;
+		int teamLength = -1;
+		if (pos < end) {
+			pos = copyField(buffer, pos + 1, end, batch);
+			if (pos == ERROR) {
+				return reject(batch, arenaMark, "unterminated quote");
+			}
+			if (pos != end) {
+				return reject(batch, arenaMark, "too many columns");
+			}
+			teamLength = batch.arenaSize - teamOffset;
+			if (teamLength == 0) {
+				teamLength = -1;
+			}
+		}
+		return accept(batch, lineNumber, usernameOffset, usernameLength, teamOffset, teamLength, age);
+	}
+
+	// 필드 하나를 arena 로 복사하고 다음 ',' (또는 end) 위치를 돌려준다.
+	private static int copyField(ByteBuffer buffer, int pos, int end, RowBatch batch) {
+		if (pos < end && buffer.get(pos) == '"') {
+			pos++;
+			while (true) {
+				if (pos >= end) {
+					return ERROR;
+				}
+				byte b = buffer.get(pos++);
+				if (b == '"') {
+					if (pos < end && buffer.get(pos) == '"') {
+						batch.put((byte) '"');
+						pos++;
+						continue;
+					}
+					// 닫는 따옴표 뒤에는 구분자나 줄 끝만 올 수 있다.
+					return pos == end || buffer.get(pos) == ',' ? pos : ERROR;
+				}
+				batch.put(b);
+			}
+		}
+		while (pos < end) {
+			byte b = buffer.get(pos);
+			if (b == ',') {
+				break;
+			}
+			batch.put(b);
+			pos++;
+		}
+		return pos;
+	}
+
+	private static String reject(RowBatch batch, int arenaMark, String reason) {
+		batch.arenaSize = arenaMark;
+		return reason;
+	}
+}
@@ -0,0 +1,9 @@
+package study.datajpa.ingest;
+
+public enum ImportFormat {
+
+	// username,age,team_name  (team_name 은 비워둘 수 있음, 따옴표/"" 이스케이프 지원)
+	CSV,
+	// {"username":"member1","age":10,"teamName":"teamA"}  한 줄에 하나
+	NDJSON
+}
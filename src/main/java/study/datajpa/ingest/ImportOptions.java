@@ -0,0 +1,33 @@
+package study.datajpa.ingest;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+@Getter
+@Builder
+public class ImportOptions {
+
+	@Builder.Default
+	private final ImportFormat format = ImportFormat.CSV;
+
+	// CSV 첫 줄이 헤더인지
+	@Builder.Default
+	private final boolean header = false;
+
+	// JDBC 배치 크기 = 스테이지 사이에 넘기는 묶음 크기
+	@Builder.Default
+	private final int batchSize = 1_000;
+
+	// 스테이지 사이 큐에 쌓아둘 수 있는 묶음 수 (넘치면 앞 스테이지가 기다린다)
+	@Builder.Default
+	private final int queueCapacity = 4;
+
+	// write 스테이지 스레드 수 (스레드마다 커넥션 하나)
+	@Builder.Default
+	private final int writers = 2;
+
+	// 잘못된 행을 적을 파일. null 이면 입력 파일 옆에 <파일명>.rejects
+	private final Path rejectFile;
+}
@@ -0,0 +1,29 @@
+package study.datajpa.ingest;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Getter
+@ToString
+public class ImportReport {
+
+	private final long lines;
+	private final long imported;
+	private final long rejected;
+	private final long teamsCreated;
+	private final Duration elapsed;
+
+	public ImportReport(long lines, long imported, long rejected, long teamsCreated, Duration elapsed) {
+		this.lines = lines;
+		this.imported = imported;
+		this.rejected = rejected;
+		this.teamsCreated = teamsCreated;
+		this.elapsed = elapsed;
+	}
+
+	public double getRowsPerSecond() {
+		return imported * 1000.0 / Math.max(1, elapsed.toMillis());
+	}
+}
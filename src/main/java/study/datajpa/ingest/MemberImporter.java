@@ -0,0 +1,584 @@
+package study.datajpa.ingest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import study.datajpa.cache.MemberLookupCache;
+import study.datajpa.id.IdProperties;
+import study.datajpa.id.SequenceBlockAllocator;
+import study.datajpa.memo.RequestQueryMemo;
+import study.datajpa.shard.Shards;
+import study.datajpa.stats.TeamStatsStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// >> 39. 파일 -> Member/Team 벌크 import
+// save() 를 한 건씩 부르는 대신 세 단계 파이프라인으로 나눈다. 단계 사이는 크기가 정해진 큐라서 뒤가 밀리면 앞이 기다린다.
+//   parse   : 파일을 메모리 매핑해서 바이트 단위로 파싱 (문자열 필드는 묶음 arena 에 복사, 행마다 String 을 만들지 않음)
+//   resolve : 팀 이름 -> team_id (시작할 때 team 테이블을 한 번 읽어두고, 없는 팀은 묶음 단위로 한 번에 insert)
+//   (member_id/team_id 는 JPA 와 같은 시퀀스에서 블록 단위로 받아 클라이언트에서 채운다)
+//   write   : writer 여러 개가 member 를 묶음 단위로 insert, 묶음마다 커밋 (p6spy 로깅을 거치지 않도록 풀 커넥션을 직접 쓴다)
+// 샤딩을 켜면 새 팀은 샤드에 돌아가며 배치하고, 멤버는 팀의 샤드에 쓴다. (ID 는 샤드 번호가 들어간 ID)
+// 잘못된 행은 reject 파일로 보내고 계속 진행한다.
+// JPA 를 거치지 않으므로 끝나면 팀 통계/유저네임 캐시/요청 메모를 다시 맞추도록 알린다.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberImporter {
+
+	// 한 번에 매핑할 파일 구간 크기 (한 줄이 이보다 길면 안 된다)
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static final String INSERT_MEMBER = "insert into member (member_id, username, age, team_id) values ";
+	private static final String MEMBER_VALUES = "(?, ?, ?, ?)";
+
+	private final Shards shards;
+	private final TeamStatsStore teamStatsStore;
+	private final MemberLookupCache memberLookupCache;
+	private final IdProperties idProperties;
+
+	public ImportReport importFile(Path file, ImportOptions options) {
+		long startNanos = System.nanoTime();
+		Path rejectFile = options.getRejectFile() != null
+			? options.getRejectFile() : file.resolveSibling(file.getFileName() + ".rejects");
+
+		BlockingQueue<RowBatch> parsed = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		BlockingQueue<RowBatch> resolved = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		AtomicBoolean aborted = new AtomicBoolean();
+		AtomicLong imported = new AtomicLong();
+		AtomicLong teamsCreated = new AtomicLong();
+		long lines;
+
+		ExecutorService executor = Executors.newFixedThreadPool(1 + options.getWriters());
+		try (RejectSink rejects = new RejectSink(rejectFile)) {
+			Files.deleteIfExists(rejectFile);
+			Future<?> resolveStage = executor.submit(() -> {
+				try {
+					resolveStage(parsed, resolved, aborted, rejects, teamsCreated);
+				} catch (Exception e) {
+					aborted.set(true);
+					throw e;
+				}
+				return null;
+			});
+			List<Future<?>> stages = new ArrayList<>();
+			stages.add(resolveStage);
+			for (int i = 0; i < options.getWriters(); i++) {
+				stages.add(executor.submit(() -> {
+					try {
+						writeStage(resolved, aborted, rejects, imported);
+					} catch (Exception e) {
+						aborted.set(true);
+						throw e;
+					}
+					return null;
+				}));
+			}
+
+			try {
+				lines = parseStage(file, options, parsed, aborted, rejects);
+				for (Future<?> stage : stages) {
+					stage.get();
+				}
+			} catch (RuntimeException | ExecutionException e) {
+				aborted.set(true);
+				throw rootFailure(e instanceof ExecutionException ? e.getCause() : e, stages);
+			} catch (InterruptedException e) {
+				aborted.set(true);
+				throw e;
+			}
+
+			ImportReport report = new ImportReport(lines, imported.get(), rejects.count(), teamsCreated.get(),
+				Duration.ofNanos(System.nanoTime() - startNanos));
+			log.info("member import finished: {} imported, {} rejected, {} teams created, {} rows/s",
+				report.getImported(), report.getRejected(), report.getTeamsCreated(),
+				String.format("%.0f", report.getRowsPerSecond()));
+			return report;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("member import interrupted", e);
+		} finally {
+			executor.shutdownNow();
+			teamStatsStore.markAllDirty();
+			memberLookupCache.invalidateAll();
+			RequestQueryMemo.invalidateAllCurrent();
+		}
+	}
+
+	// 한 스테이지가 실패하면 나머지 스테이지는 ImportAbortedException 으로 빠져나온다.
+	// 그 예외 대신 처음 실제로 실패한 스테이지의 예외를 던지고, 다른 실패는 suppressed 로 붙인다.
+	private static RuntimeException rootFailure(Throwable failure, List<Future<?>> stages) {
+		List<Throwable> failures = new ArrayList<>();
+		failures.add(failure);
+		for (Future<?> stage : stages) {
+			try {
+				stage.get(5, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				failures.add(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (TimeoutException | CancellationException e) {
+				// 아직 안 끝난 스테이지는 finally 의 shutdownNow 로 정리된다.
+			}
+		}
+		Throwable root = failures.stream()
+			.filter(candidate -> !(candidate instanceof ImportAbortedException))
+			.findFirst()
+			.orElse(failure);
+		for (Throwable other : failures) {
+			if (other != root && !(other instanceof ImportAbortedException)) {
+				root.addSuppressed(other);
+			}
+		}
+		log.error("member import failed", root);
+		return root instanceof RuntimeException ? (RuntimeException) root : new IllegalStateException("member import failed", root);
+	}
+
+	private long parseStage(Path file, ImportOptions options, BlockingQueue<RowBatch> out,
+							AtomicBoolean aborted, RejectSink rejects) throws IOException {
+		RecordParser parser = RecordParser.of(options.getFormat());
+		RowBatch batch = new RowBatch(options.getBatchSize());
+		long lineNumber = 0;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				int window = (int) Math.min(WINDOW_SIZE, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+
+				// 파일 끝이 아니면 마지막 완전한 줄까지만 처리하고 나머지는 다음 구간에서
+				int processEnd = window;
+				if (position + window < size) {
+					while (processEnd > 0 && buffer.get(processEnd - 1) != '\n') {
+						processEnd--;
+					}
+					if (processEnd == 0) {
+						throw new IllegalStateException("line longer than " + WINDOW_SIZE + " bytes near offset " + position);
+					}
+				}
+
+				int lineStart = 0;
+				for (int i = 0; i <= processEnd; i++) {
+					if (i < processEnd && buffer.get(i) != '\n') {
+						continue;
+					}
+					if (i == processEnd && lineStart == processEnd) {
+						break;
+					}
+					lineNumber++;
+					int lineEnd = i;
+					if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+						lineEnd--;
+					}
+					boolean skip = lineEnd == lineStart || (lineNumber == 1 && options.isHeader());
+					if (!skip) {
+						String reason = parser.parse(buffer, lineStart, lineEnd, lineNumber, batch);
+						if (reason != null) {
+							rejects.reject(lineNumber, reason, decode(buffer, lineStart, lineEnd));
+						} else if (batch.isFull()) {
+							put(out, batch, aborted);
+							batch = new RowBatch(options.getBatchSize());
+						}
+					}
+					lineStart = i + 1;
+				}
+				position += processEnd;
+			}
+		}
+
+		if (batch.size > 0) {
+			put(out, batch, aborted);
+		}
+		put(out, RowBatch.END, aborted);
+		return lineNumber;
+	}
+
+	private void resolveStage(BlockingQueue<RowBatch> in, BlockingQueue<RowBatch> out,
+							  AtomicBoolean aborted, RejectSink rejects, AtomicLong teamsCreated) throws SQLException {
+		try (ShardConnections connections = new ShardConnections(false)) {
+			TeamNameTable teams = new TeamNameTable();
+			for (int shard = 0; shard < shards.count(); shard++) {
+				loadTeams(connections.get(shard), teams);
+			}
+			SequenceBlockAllocator teamIds = new SequenceBlockAllocator("team_seq", idProperties.getBlockSize());
+			// 만들지 못한 팀 이름 -> 사유 (같은 이름을 다시 시도하지 않는다)
+			Map<String, String> failedTeams = new HashMap<>();
+			while (true) {
+				RowBatch batch = take(in, aborted);
+				if (batch == RowBatch.END) {
+					put(out, batch, aborted);
+					return;
+				}
+
+				// 처음 보는 팀 이름만 String 으로 만들어 모은다.
+				Map<String, Long> missing = new LinkedHashMap<>();
+				for (int row = 0; row < batch.size; row++) {
+					if (batch.teamLengths[row] >= 0
+						&& teams.get(batch.arena, batch.teamOffsets[row], batch.teamLengths[row]) == 0) {
+						String name = batch.teamName(row);
+						if (!failedTeams.containsKey(name)) {
+							missing.put(name, 0L);
+						}
+					}
+				}
+				if (!missing.isEmpty()) {
+					teamsCreated.addAndGet(createTeams(connections, teamIds, missing, failedTeams));
+					missing.forEach((name, id) -> {
+						if (id != 0) {
+							teams.putIfAbsent(name, id);
+						}
+					});
+				}
+
+				// 팀을 만들지 못한 행은 reject 하고 나머지를 앞으로 당긴다.
+				int kept = 0;
+				for (int row = 0; row < batch.size; row++) {
+					long teamId = batch.teamLengths[row] < 0
+						? 0 : teams.get(batch.arena, batch.teamOffsets[row], batch.teamLengths[row]);
+					if (batch.teamLengths[row] >= 0 && teamId == 0) {
+						rejects.reject(batch.lineNumbers[row],
+							"could not create team: " + failedTeams.get(batch.teamName(row)), raw(batch, row));
+						continue;
+					}
+					batch.moveRow(row, kept);
+					batch.teamIds[kept++] = teamId;
+				}
+				batch.size = kept;
+				if (kept > 0) {
+					put(out, batch, aborted);
+				}
+			}
+		}
+	}
+
+	private static void loadTeams(Connection connection, TeamNameTable teams) throws SQLException {
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery("select team_id, name from team where name is not null order by team_id")) {
+			while (rs.next()) {
+				teams.putIfAbsent(rs.getString(2), rs.getLong(1));
+			}
+		}
+	}
+
+	// 없는 팀은 샤드를 정하고 id 를 먼저 받아서 샤드마다 한 번의 배치로 insert. 배치가 실패하면 한 건씩 다시 넣고,
+	// 그래도 안 되는 이름은 id 를 0 으로 두고 failed 에 사유를 남긴다. 만든 팀 수를 돌려준다.
+	private int createTeams(ShardConnections connections, SequenceBlockAllocator teamIds, Map<String, Long> names,
+							Map<String, String> failed) throws SQLException {
+		Map<Integer, List<String>> byShard = new TreeMap<>();
+		for (String name : names.keySet()) {
+			byShard.computeIfAbsent(shards.shardForNewTeam(), shard -> new ArrayList<>()).add(name);
+		}
+		int created = 0;
+		for (Map.Entry<Integer, List<String>> group : byShard.entrySet()) {
+			Connection connection = connections.get(group.getKey());
+			List<String> shardNames = group.getValue();
+			long[] ids = new long[shardNames.size()];
+			fillIds(teamIds, connection, group.getKey(), ids, ids.length);
+			for (int i = 0; i < ids.length; i++) {
+				names.put(shardNames.get(i), ids[i]);
+			}
+			created += insertTeams(connection, shardNames, names, failed);
+		}
+		return created;
+	}
+
+	private static int insertTeams(Connection connection, List<String> shardNames, Map<String, Long> names,
+								   Map<String, String> failed) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("insert into team (team_id, name) values (?, ?)")) {
+			try {
+				for (String name : shardNames) {
+					insert.setLong(1, names.get(name));
+					insert.setString(2, name);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+				connection.commit();
+				return shardNames.size();
+			} catch (SQLException e) {
+				connection.rollback();
+				insert.clearBatch();
+			}
+
+			int created = 0;
+			for (String name : shardNames) {
+				try {
+					insert.setLong(1, names.get(name));
+					insert.setString(2, name);
+					insert.executeUpdate();
+					connection.commit();
+					created++;
+				} catch (SQLException e) {
+					connection.rollback();
+					failed.put(name, e.getMessage().replace('\n', ' '));
+					names.put(name, 0L);
+				}
+			}
+			return created;
+		}
+	}
+
+	// 샤딩을 켜면 ID 에 샤드 번호가 들어가야 하므로 시퀀스 대신 Shards 에서 받는다.
+	private void fillIds(SequenceBlockAllocator allocator, Connection connection, int shard, long[] ids, int count)
+		throws SQLException {
+		if (!shards.isEnabled()) {
+			allocator.fill(connection, ids, count);
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			ids[i] = shards.nextId(shard);
+		}
+	}
+
+	// H2 의 TCP 드라이버는 executeBatch 를 행마다 왕복하므로 묶음 전체를 다중 VALUES insert 한 번으로 보낸다.
+	// 샤딩을 켜면 묶음을 샤드별로 나눠서 샤드마다 insert 한 번씩
+	private void writeStage(BlockingQueue<RowBatch> in, AtomicBoolean aborted, RejectSink rejects,
+							AtomicLong imported) throws SQLException {
+		try (ShardConnections connections = new ShardConnections(true)) {
+			SequenceBlockAllocator memberIds = new SequenceBlockAllocator("member_seq", idProperties.getBlockSize());
+			long[] ids = null;
+			int[] rowShards = null;
+			int[] rows = null;
+			PreparedStatement[] fullBatches = new PreparedStatement[shards.count()];
+			try {
+				while (true) {
+					RowBatch batch = take(in, aborted);
+					if (batch == RowBatch.END) {
+						// 다른 writer 도 끝나도록 다시 넣어둔다.
+						put(in, batch, aborted);
+						return;
+					}
+					int capacity = batch.teamIds.length;
+					if (ids == null || ids.length < capacity) {
+						ids = new long[capacity];
+						rowShards = new int[capacity];
+						rows = new int[capacity];
+					}
+					// 팀이 있으면 팀의 샤드, 없으면 새로 배치
+					for (int row = 0; row < batch.size; row++) {
+						rowShards[row] = shards.shardForMember(batch.teamIds[row] == 0 ? null : batch.teamIds[row]);
+					}
+					for (int shard = 0; shard < shards.count(); shard++) {
+						int count = 0;
+						for (int row = 0; row < batch.size; row++) {
+							if (rowShards[row] == shard) {
+								rows[count++] = row;
+							}
+						}
+						if (count == 0) {
+							continue;
+						}
+						Connection connection = connections.get(shard);
+						fillIds(memberIds, connection, shard, ids, count);
+						PreparedStatement insert;
+						if (count == capacity) {
+							if (fullBatches[shard] == null) {
+								fullBatches[shard] = connection.prepareStatement(insertSql(count));
+							}
+							insert = fullBatches[shard];
+						} else {
+							insert = connection.prepareStatement(insertSql(count));
+						}
+						try {
+							for (int i = 0; i < count; i++) {
+								bind(insert, i * 4, batch, rows[i], ids[i]);
+							}
+							insert.executeUpdate();
+							connection.commit();
+							imported.addAndGet(count);
+						} catch (SQLException e) {
+							// 묶음이 실패하면 한 건씩 다시 넣어서 문제 있는 행만 reject
+							connection.rollback();
+							imported.addAndGet(writeOneByOne(connection, batch, rows, count, ids, rejects));
+						} finally {
+							if (insert != fullBatches[shard]) {
+								insert.close();
+							}
+						}
+					}
+				}
+			} finally {
+				for (PreparedStatement fullBatch : fullBatches) {
+					if (fullBatch != null) {
+						fullBatch.close();
+					}
+				}
+			}
+		}
+	}
+
+	private static String insertSql(int rows) {
+		StringBuilder sql = new StringBuilder(INSERT_MEMBER.length() + rows * (MEMBER_VALUES.length() + 1));
+		sql.append(INSERT_MEMBER);
+		for (int row = 0; row < rows; row++) {
+			if (row > 0) {
+				sql.append(',');
+			}
+			sql.append(MEMBER_VALUES);
+		}
+		return sql.toString();
+	}
+
+	private long writeOneByOne(Connection connection, RowBatch batch, int[] rows, int count, long[] ids,
+							   RejectSink rejects) throws SQLException {
+		long written = 0;
+		try (PreparedStatement insert = connection.prepareStatement(insertSql(1))) {
+			for (int i = 0; i < count; i++) {
+				int row = rows[i];
+				try {
+					bind(insert, 0, batch, row, ids[i]);
+					insert.executeUpdate();
+					connection.commit();
+					written++;
+				} catch (SQLException e) {
+					connection.rollback();
+					rejects.reject(batch.lineNumbers[row], e.getMessage().replace('\n', ' '), raw(batch, row));
+				}
+			}
+		}
+		return written;
+	}
+
+	private static String raw(RowBatch batch, int row) {
+		return batch.username(row) + "," + batch.ages[row] + "," + (batch.teamName(row) == null ? "" : batch.teamName(row));
+	}
+
+	private static void bind(PreparedStatement insert, int offset, RowBatch batch, int row, long id) throws SQLException {
+		insert.setLong(offset + 1, id);
+		insert.setString(offset + 2, batch.username(row));
+		insert.setInt(offset + 3, batch.ages[row]);
+		if (batch.teamIds[row] == 0) {
+			insert.setNull(offset + 4, Types.BIGINT);
+		} else {
+			insert.setLong(offset + 4, batch.teamIds[row]);
+		}
+	}
+
+	private static String decode(MappedByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// 다른 스테이지가 실패하면 기다리지 않고 빠져나온다.
+	private static void put(BlockingQueue<RowBatch> queue, RowBatch batch, AtomicBoolean aborted) {
+		try {
+			while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (aborted.get()) {
+					throw new ImportAbortedException();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("member import interrupted", e);
+		}
+	}
+
+	private static RowBatch take(BlockingQueue<RowBatch> queue, AtomicBoolean aborted) {
+		try {
+			RowBatch batch;
+			while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+				if (aborted.get()) {
+					throw new ImportAbortedException();
+				}
+			}
+			return batch;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("member import interrupted", e);
+		}
+	}
+
+	// 샤드별 커넥션 (처음 쓸 때 열고 autocommit 을 끈다)
+	private class ShardConnections implements AutoCloseable {
+
+		private final Connection[] connections = new Connection[shards.count()];
+		// p6spy 로깅을 거치지 않고 풀 커넥션을 직접
+		private final boolean direct;
+
+		ShardConnections(boolean direct) {
+			this.direct = direct;
+		}
+
+		Connection get(int shard) throws SQLException {
+			if (connections[shard] == null) {
+				DataSource dataSource = shards.dataSource(shard);
+				Connection connection = direct
+					? dataSource.unwrap(HikariDataSource.class).getConnection() : dataSource.getConnection();
+				connections[shard] = connection;
+				connection.setAutoCommit(false);
+			}
+			return connections[shard];
+		}
+
+		@Override
+		public void close() throws SQLException {
+			SQLException failure = null;
+			for (Connection connection : connections) {
+				if (connection == null) {
+					continue;
+				}
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	// 다른 스테이지가 실패해서 기다리다 빠져나올 때 (원인은 그 스테이지 쪽에 있다)
+	private static class ImportAbortedException extends IllegalStateException {
+
+		private static final long serialVersionUID = 1L;
+
+		ImportAbortedException() {
+			super("member import aborted");
+		}
+	}
+}
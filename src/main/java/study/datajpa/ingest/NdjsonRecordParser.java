@@ -0,0 +1,265 @@
+package study.datajpa.ingest;
+
+import java.nio.ByteBuffer;
+
+// {"username":"...","age":10,"teamName":"..."} 처럼 평평한 객체만 지원한다. 모르는 키는 건너뛴다.
+class NdjsonRecordParser extends RecordParser {
+
+	private static final byte[] USERNAME = {'u', 's', 'e', 'r', 'n', 'a', 'm', 'e'};
+	private static final byte[] AGE = {'a', 'g', 'e'};
+	private static final byte[] TEAM_NAME = {'t', 'e', 'a', 'm', 'N', 'a', 'm', 'e'};
+
+	private int pos;
+	private int end;
+	private ByteBuffer buffer;
+
+	@Override
+	String parse(ByteBuffer buffer, int start, int end, long lineNumber, RowBatch batch) {
+		this.buffer = buffer;
+		this.pos = start;
+		this.end = end;
+		int arenaMark = batch.arenaSize;
+
+		int usernameOffset = -1;
+		int usernameLength = 0;
+		int teamOffset = -1;
+		int teamLength = -1;
+		int age = -1;
+
+		skipWhitespace();
+		if (!consume('{')) {
+			return reject(batch, arenaMark, "not a json object");
+		}
+		skipWhitespace();
+		if (!consume('}')) {
+			while (true) {
+				skipWhitespace();
+				int keyStart = pos + 1;
+				if (!skipString()) {
+					return reject(batch, arenaMark, "invalid key");
+				}
+				int keyEnd = pos - 1;
+				skipWhitespace();
+				if (!consume(':')) {
+					return reject(batch, arenaMark, "missing ':'");
+				}
+				skipWhitespace();
+
+				if (keyEquals(keyStart, keyEnd, USERNAME)) {
+					usernameOffset = batch.arenaSize;
+					if (!copyString(batch)) {
+						return reject(batch, arenaMark, "invalid username");
+					}
+					usernameLength = batch.arenaSize - usernameOffset;
+				} else if (keyEquals(keyStart, keyEnd, TEAM_NAME)) {
+					if (consumeLiteral("null")) {
+						teamLength = -1;
+					} else {
+						teamOffset = batch.arenaSize;
+						if (!copyString(batch)) {
+							return reject(batch, arenaMark, "invalid teamName");
+						}
+						teamLength = batch.arenaSize - teamOffset;
+						if (teamLength == 0) {
+							teamLength = -1;
+						}
+					}
+				} else if (keyEquals(keyStart, keyEnd, AGE)) {
+					int numberStart = pos;
+					while (pos < end && buffer.get(pos) >= '0' && buffer.get(pos) <= '9') {
+						pos++;
+					}
+					age = parseAge(buffer, numberStart, pos);
+					if (age < 0) {
+						return reject(batch, arenaMark, "invalid age");
+					}
+				} else if (!skipValue()) {
+					return reject(batch, arenaMark, "unsupported value");
+				}
+
+				skipWhitespace();
+				if (consume('}')) {
+					break;
+				}
+				if (!consume(',')) {
+					return reject(batch, arenaMark, "expected ',' or '}'");
+				}
+			}
+		}
+		skipWhitespace();
+		if (pos != end) {
+			return reject(batch, arenaMark, "trailing characters");
+		}
+		if (usernameOffset < 0 || usernameLength == 0) {
+			return reject(batch, arenaMark, "missing username");
+		}
+		if (age < 0) {
+			return reject(batch, arenaMark, "missing age");
+		}
+		return accept(batch, lineNumber, usernameOffset, usernameLength, teamOffset, teamLength, age);
+	}
+
+	private boolean keyEquals(int start, int end, byte[] key) {
+		if (end - start != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (buffer.get(start + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 문자열 값을 이스케이프를 풀어서 arena 로 복사
+	private boolean copyString(RowBatch batch) {
+		if (!consume('"')) {
+			return false;
+		}
+		while (pos < end) {
+			byte b = buffer.get(pos++);
+			if (b == '"') {
+				return true;
+			}
+			if (b != '\\') {
+				batch.put(b);
+				continue;
+			}
+			if (pos >= end) {
+				return false;
+			}
+			byte escaped = buffer.get(pos++);
+			switch (escaped) {
+				case '"': case '\\': case '/': batch.put(escaped); break;
+				case 'b': batch.put((byte) '\b'); break;
+				case 'f': batch.put((byte) '\f'); break;
+				case 'n': batch.put((byte) '\n'); break;
+				case 'r': batch.put((byte) '\r'); break;
+				case 't': batch.put((byte) '\t'); break;
+				case 'u':
+					int codePoint = readHex4();
+					if (codePoint < 0) {
+						return false;
+					}
+					if (Character.isHighSurrogate((char) codePoint) && pos + 1 < end
+						&& buffer.get(pos) == '\\' && buffer.get(pos + 1) == 'u') {
+						pos += 2;
+						int low = readHex4();
+						if (low < 0 || !Character.isLowSurrogate((char) low)) {
+							return false;
+						}
+						codePoint = Character.toCodePoint((char) codePoint, (char) low);
+					}
+					putUtf8(batch, codePoint);
+					break;
+				default:
+					return false;
+			}
+		}
+		return false;
+	}
+
+	private int readHex4() {
+		if (pos + 4 > end) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(buffer.get(pos++), 16);
+			if (digit < 0) {
+				return -1;
+			}
+			value = value * 16 + digit;
+		}
+		return value;
+	}
+
+	private static void putUtf8(RowBatch batch, int codePoint) {
+		if (codePoint < 0x80) {
+			batch.put((byte) codePoint);
+		} else if (codePoint < 0x800) {
+			batch.put((byte) (0xC0 | (codePoint >> 6)));
+			batch.put((byte) (0x80 | (codePoint & 0x3F)));
+		} else if (codePoint < 0x10000) {
+			batch.put((byte) (0xE0 | (codePoint >> 12)));
+			batch.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			batch.put((byte) (0x80 | (codePoint & 0x3F)));
+		} else {
+			batch.put((byte) (0xF0 | (codePoint >> 18)));
+			batch.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+			batch.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			batch.put((byte) (0x80 | (codePoint & 0x3F)));
+		}
+	}
+
+	private boolean skipString() {
+		if (!consume('"')) {
+			return false;
+		}
+		while (pos < end) {
+			byte b = buffer.get(pos++);
+			if (b == '\\') {
+				pos++;
+			} else if (b == '"') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 모르는 키의 값: 문자열, 숫자, true/false/null 만
+	private boolean skipValue() {
+		if (pos < end && buffer.get(pos) == '"') {
+			return skipString();
+		}
+		if (consumeLiteral("true") || consumeLiteral("false") || consumeLiteral("null")) {
+			return true;
+		}
+		int start = pos;
+		while (pos < end) {
+			byte b = buffer.get(pos);
+			if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+				pos++;
+			} else {
+				break;
+			}
+		}
+		return pos > start;
+	}
+
+	private boolean consumeLiteral(String literal) {
+		if (pos + literal.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			if (buffer.get(pos + i) != literal.charAt(i)) {
+				return false;
+			}
+		}
+		pos += literal.length();
+		return true;
+	}
+
+	private boolean consume(char c) {
+		if (pos < end && buffer.get(pos) == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipWhitespace() {
+		while (pos < end) {
+			byte b = buffer.get(pos);
+			if (b != ' ' && b != '\t') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private static String reject(RowBatch batch, int arenaMark, String reason) {
+		batch.arenaSize = arenaMark;
+		return reason;
+	}
+}
@@ -0,0 +1,42 @@
+package study.datajpa.ingest;
+
+import java.nio.ByteBuffer;
+
+// 한 줄(bytes[start, end))을 파싱해서 RowBatch 에 추가한다.
+// 성공하면 null, 잘못된 행이면 거절 사유를 돌려준다. (이 경우 batch 는 건드리지 않은 상태로 되돌린다)
+abstract class RecordParser {
+
+	abstract String parse(ByteBuffer buffer, int start, int end, long lineNumber, RowBatch batch);
+
+	static RecordParser of(ImportFormat format) {
+		return format == ImportFormat.CSV ? new CsvRecordParser() : new NdjsonRecordParser();
+	}
+
+	// 숫자 바이트를 바로 int 로 (Integer.parseInt(String) 없이)
+	static int parseAge(ByteBuffer buffer, int start, int end) {
+		if (start >= end || end - start > 9) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+	static String accept(RowBatch batch, long lineNumber, int usernameOffset, int usernameLength,
+						 int teamOffset, int teamLength, int age) {
+		int row = batch.size++;
+		batch.lineNumbers[row] = lineNumber;
+		batch.usernameOffsets[row] = usernameOffset;
+		batch.usernameLengths[row] = usernameLength;
+		batch.teamOffsets[row] = teamOffset;
+		batch.teamLengths[row] = teamLength;
+		batch.ages[row] = age;
+		return null;
+	}
+}
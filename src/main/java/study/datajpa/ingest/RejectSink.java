@@ -0,0 +1,45 @@
+package study.datajpa.ingest;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// 잘못된 행을 "줄번호<TAB>사유<TAB>원본" 형식으로 남긴다. 여러 스테이지에서 같이 쓴다.
+class RejectSink implements Closeable {
+
+	private final Path file;
+	private BufferedWriter writer;
+	private long count;
+
+	RejectSink(Path file) {
+		this.file = file;
+	}
+
+	synchronized void reject(long lineNumber, String reason, String raw) {
+		try {
+			if (writer == null) {
+				writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+			}
+			writer.write(lineNumber + "\t" + reason + "\t" + raw);
+			writer.newLine();
+			count++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	synchronized long count() {
+		return count;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package study.datajpa.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// 스테이지 사이에 넘기는 행 묶음
+// 문자열 필드는 행마다 String 을 만들지 않고 묶음 하나짜리 byte 배열(arena)에 복사해서 offset/length 로 가리킨다.
+class RowBatch {
+
+	static final RowBatch END = new RowBatch(0);
+
+	final long[] lineNumbers;
+	final int[] usernameOffsets;
+	final int[] usernameLengths;
+	final int[] teamOffsets;
+	final int[] teamLengths;		// -1 이면 팀 없음
+	final int[] ages;
+	final long[] teamIds;			// resolve 스테이지에서 채움 (0 이면 팀 없음)
+
+	byte[] arena;
+	int arenaSize;
+	int size;
+
+	RowBatch(int capacity) {
+		lineNumbers = new long[capacity];
+		usernameOffsets = new int[capacity];
+		usernameLengths = new int[capacity];
+		teamOffsets = new int[capacity];
+		teamLengths = new int[capacity];
+		ages = new int[capacity];
+		teamIds = new long[capacity];
+		arena = new byte[capacity * 32];
+	}
+
+	boolean isFull() {
+		return size == lineNumbers.length;
+	}
+
+	// arena 에 바이트 하나 추가
+	void put(byte b) {
+		ensureArena(1);
+		arena[arenaSize++] = b;
+	}
+
+	void ensureArena(int extra) {
+		if (arenaSize + extra > arena.length) {
+			arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + extra));
+		}
+	}
+
+	// 행을 앞으로 당길 때 (arena 는 그대로 두고 위치만 옮긴다)
+	void moveRow(int from, int to) {
+		if (from == to) {
+			return;
+		}
+		lineNumbers[to] = lineNumbers[from];
+		usernameOffsets[to] = usernameOffsets[from];
+		usernameLengths[to] = usernameLengths[from];
+		teamOffsets[to] = teamOffsets[from];
+		teamLengths[to] = teamLengths[from];
+		ages[to] = ages[from];
+		teamIds[to] = teamIds[from];
+	}
+
+	String username(int row) {
+		return new String(arena, usernameOffsets[row], usernameLengths[row], StandardCharsets.UTF_8);
+	}
+
+	String teamName(int row) {
+		return teamLengths[row] < 0 ? null : new String(arena, teamOffsets[row], teamLengths[row], StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,74 @@
+package study.datajpa.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// 팀 이름(byte) -> team_id
+// 행마다 String 을 만들어 HashMap 을 찾지 않도록 arena 의 바이트 구간으로 바로 찾는 오픈 어드레싱 테이블
+class TeamNameTable {
+
+	private byte[][] keys = new byte[64][];
+	private long[] values = new long[64];
+	private int size;
+
+	// 없으면 0
+	long get(byte[] source, int offset, int length) {
+		int mask = keys.length - 1;
+		for (int i = hash(source, offset, length) & mask; ; i = (i + 1) & mask) {
+			byte[] key = keys[i];
+			if (key == null) {
+				return 0;
+			}
+			if (Arrays.equals(key, 0, key.length, source, offset, offset + length)) {
+				return values[i];
+			}
+		}
+	}
+
+	// 이름이 같은 팀이 여러 개면 먼저 넣은 쪽을 유지한다.
+	void putIfAbsent(String name, long id) {
+		byte[] key = name.getBytes(StandardCharsets.UTF_8);
+		if (get(key, 0, key.length) != 0) {
+			return;
+		}
+		if ((size + 1) * 2 > keys.length) {
+			resize();
+		}
+		insert(key, id);
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void insert(byte[] key, long id) {
+		int mask = keys.length - 1;
+		int i = hash(key, 0, key.length) & mask;
+		while (keys[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = id;
+	}
+
+	private void resize() {
+		byte[][] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new byte[oldKeys.length * 2][];
+		values = new long[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(byte[] source, int offset, int length) {
+		int h = 0x811C9DC5;
+		for (int i = offset; i < offset + length; i++) {
+			h = (h ^ source[i]) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+}
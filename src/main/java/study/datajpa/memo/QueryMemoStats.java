@@ -0,0 +1,48 @@
+package study.datajpa.memo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// 끝난 요청들의 메모 적중률 누적
+@Slf4j
+@Component
+public class QueryMemoStats {
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	void record(RequestQueryMemo memo) {
+		requests.increment();
+		hits.add(memo.getHits());
+		misses.add(memo.getMisses());
+		invalidations.add(memo.getInvalidations());
+		log.debug("request query memo: {} hits, {} misses, {} invalidations",
+			memo.getHits(), memo.getMisses(), memo.getInvalidations());
+	}
+
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	public double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+}
@@ -0,0 +1,144 @@
+package study.datajpa.memo;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// >> 40. 요청 범위 쿼리 결과 메모이제이션
+// 영속성 컨텍스트는 em.find(기본키) 만 중복을 막아준다. 한 요청 안에서 같은 메소드 + 같은 인자로
+// 레포지토리 쿼리를 다시 부르면 DB 에 다시 가지 않고 이전 결과를 돌려준다.
+// HTTP 요청 속성에 붙여두므로 요청끼리는 절대 공유되지 않고, 요청이 끝나면 같이 버려진다.
+public class RequestQueryMemo {
+
+	private static final String ATTRIBUTE = RequestQueryMemo.class.getName();
+
+	private final Map<Key, Object> results = new HashMap<>();
+	// 엔티티 타입 -> 그 타입에 의존하는 결과 키
+	private final Map<Class<?>, Set<Key>> keysByEntity = new HashMap<>();
+
+	private long hits;
+	private long misses;
+	private long invalidations;
+
+	// 요청 밖(배치, 스케줄러)에서는 null
+	public static RequestQueryMemo current() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		return attributes == null ? null : (RequestQueryMemo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+	}
+
+	static RequestQueryMemo currentOrCreate(QueryMemoStats stats) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return null;
+		}
+		RequestQueryMemo memo = (RequestQueryMemo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (memo == null) {
+			memo = new RequestQueryMemo();
+			attributes.setAttribute(ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+			RequestQueryMemo finished = memo;
+			attributes.registerDestructionCallback(ATTRIBUTE, () -> stats.record(finished), RequestAttributes.SCOPE_REQUEST);
+		}
+		return memo;
+	}
+
+	// 레포지토리를 거치지 않는 변경(엔티티 리스너, JDBC 벌크 작업)에서 부른다.
+	public static void invalidateCurrent(Class<?> entityType) {
+		RequestQueryMemo memo = current();
+		if (memo != null) {
+			memo.invalidate(entityType);
+		}
+	}
+
+	public static void invalidateAllCurrent() {
+		RequestQueryMemo memo = current();
+		if (memo != null) {
+			memo.invalidateAll();
+		}
+	}
+
+	// 결과가 null 인 경우도 저장하기 위해 Optional 로 감싸서 돌려준다. 저장된 게 없으면 null
+	synchronized Optional<Object> get(Key key) {
+		if (results.containsKey(key)) {
+			hits++;
+			return Optional.ofNullable(results.get(key));
+		}
+		misses++;
+		return null;
+	}
+
+	synchronized void put(Key key, Object result, Set<Class<?>> dependsOn) {
+		results.put(key, result);
+		for (Class<?> entityType : dependsOn) {
+			keysByEntity.computeIfAbsent(entityType, type -> new HashSet<>()).add(key);
+		}
+	}
+
+	public synchronized void invalidate(Class<?> entityType) {
+		Set<Key> keys = keysByEntity.remove(entityType);
+		if (keys != null) {
+			results.keySet().removeAll(keys);
+			invalidations++;
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		if (!results.isEmpty()) {
+			invalidations++;
+		}
+		results.clear();
+		keysByEntity.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	// 엔티티 타입 + 메소드 + 인자 (배열 인자도 내용으로 비교)
+	// findById 처럼 상속받은 메소드는 어느 레포지토리로 불러도 같은 Method 이므로 엔티티 타입까지 키에 넣는다.
+	static final class Key {
+
+		private final Class<?> entityType;
+		private final Method method;
+		private final Object[] args;
+		private final int hash;
+
+		Key(Class<?> entityType, Method method, Object[] args) {
+			this.entityType = entityType;
+			this.method = method;
+			this.args = args.clone();
+			this.hash = 31 * (31 * entityType.hashCode() + method.hashCode()) + Arrays.deepHashCode(this.args);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return entityType.equals(other.entityType) && method.equals(other.method) && Arrays.deepEquals(args, other.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
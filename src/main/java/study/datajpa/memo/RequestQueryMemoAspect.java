@@ -0,0 +1,160 @@
+package study.datajpa.memo;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// 스프링 데이터 JPA 레포지토리 호출을 가로채서
+// - 조회(find/get/read/query/count/exists...)는 요청 메모에서 먼저 찾고
+// - 쓰기(save/delete/flush, @Modifying)는 그 엔티티 타입과 연관된 타입의 메모를 지운다.
+// 메모 적중 시 DB 에 가지 않으므로 admission control 보다 바깥에서 실행한다.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "datajpa.query-memo", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RequestQueryMemoAspect {
+
+	private static final String[] READ_PREFIXES = {"find", "get", "read", "query", "search", "count", "exists"};
+	private static final String[] WRITE_PREFIXES = {"save", "delete", "flush"};
+
+	private final EntityManagerFactory emf;
+	private final QueryMemoStats stats;
+
+	private final Map<Class<?>, Class<?>> entityTypeByProxy = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Set<Class<?>>> dependenciesByEntity = new ConcurrentHashMap<>();
+
+	public RequestQueryMemoAspect(EntityManagerFactory emf, QueryMemoStats stats) {
+		this.emf = emf;
+		this.stats = stats;
+	}
+
+	@Around("this(org.springframework.data.repository.Repository)")
+	public Object memoize(ProceedingJoinPoint joinPoint) throws Throwable {
+		RequestQueryMemo memo = RequestQueryMemo.currentOrCreate(stats);
+		if (memo == null) {
+			return joinPoint.proceed();
+		}
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		Class<?> entityType = entityType(joinPoint.getThis());
+
+		if (isWrite(method)) {
+			try {
+				return joinPoint.proceed();
+			} finally {
+				invalidate(memo, entityType);
+			}
+		}
+		if (!isMemoizable(method) || entityType == null) {
+			return joinPoint.proceed();
+		}
+
+		RequestQueryMemo.Key key = new RequestQueryMemo.Key(entityType, method, joinPoint.getArgs());
+		Optional<Object> cached = memo.get(key);
+		if (cached != null) {
+			return cached.orElse(null);
+		}
+		Object result = joinPoint.proceed();
+		memo.put(key, result, dependencies(entityType));
+		return result;
+	}
+
+	private void invalidate(RequestQueryMemo memo, Class<?> entityType) {
+		if (entityType == null) {
+			memo.invalidateAll();
+			return;
+		}
+		for (Class<?> type : dependencies(entityType)) {
+			memo.invalidate(type);
+		}
+	}
+
+	private static boolean isWrite(Method method) {
+		return AnnotatedElementUtils.hasAnnotation(method, Modifying.class) || startsWith(method.getName(), WRITE_PREFIXES);
+	}
+
+	// 잠금 조회, 한 번만 읽을 수 있는 Stream/비동기 결과, 쓰기 트랜잭션 안의 조회(아직 flush 안 된 변경이 있을 수 있음)는 제외
+	private static boolean isMemoizable(Method method) {
+		if (!startsWith(method.getName(), READ_PREFIXES)
+			|| AnnotatedElementUtils.hasAnnotation(method, Lock.class)
+			|| Stream.class.isAssignableFrom(method.getReturnType())
+			|| Future.class.isAssignableFrom(method.getReturnType())) {
+			return false;
+		}
+		return !TransactionSynchronizationManager.isActualTransactionActive()
+			|| TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	private static boolean startsWith(String name, String[] prefixes) {
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// MemberRepository extends JpaRepository<Member, Long> -> Member (못 찾으면 null)
+	private Class<?> entityType(Object proxy) {
+		Class<?> type = entityTypeByProxy.computeIfAbsent(proxy.getClass(), proxyClass -> resolveEntityType(proxy));
+		return type == Void.class ? null : type;
+	}
+
+	private static Class<?> resolveEntityType(Object proxy) {
+		for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+			if (Repository.class.isAssignableFrom(repositoryInterface)) {
+				Class<?> type = ResolvableType.forClass(repositoryInterface).as(Repository.class).resolveGeneric(0);
+				if (type != null) {
+					return type;
+				}
+			}
+		}
+		return Void.class;
+	}
+
+	// 결과에 연관 엔티티(Member.team, Team.members)가 들어 있을 수 있으므로 연관관계 타입까지 의존성으로 본다.
+	private Set<Class<?>> dependencies(Class<?> entityType) {
+		return dependenciesByEntity.computeIfAbsent(entityType, type -> {
+			Set<Class<?>> types = new HashSet<>();
+			types.add(type);
+			try {
+				EntityType<?> entity = emf.getMetamodel().entity(type);
+				for (Attribute<?, ?> attribute : entity.getAttributes()) {
+					if (attribute.isAssociation()) {
+						types.add(attribute instanceof PluralAttribute
+							? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType()
+							: attribute.getJavaType());
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				return Collections.singleton(type);
+			}
+			return types;
+		});
+	}
+}
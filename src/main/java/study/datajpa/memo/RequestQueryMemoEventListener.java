@@ -0,0 +1,62 @@
+package study.datajpa.memo;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+// >> 40-1. 하이버네이트 이벤트 리스너로 메모 무효화
+// 변경감지로 나가는 update 는 레포지토리 save 를 거치지 않으므로 aspect 가 모른다.
+// 엔티티마다 JPA 리스너를 달지 않고, 하이버네이트 이벤트 레지스트리에 insert/update/delete 후 리스너를 하나 등록해서
+// 모든 엔티티 타입의 메모를 지운다. (결과는 연관 타입으로도 등록되므로 Team 이 바뀌면 Member 조회 결과도 지워진다)
+@Component
+@ConditionalOnProperty(prefix = "datajpa.query-memo", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RequestQueryMemoEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private final EntityManagerFactory emf;
+
+	public RequestQueryMemoEventListener(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	@PostConstruct
+	public void register() {
+		EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+			.getServiceRegistry().getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		RequestQueryMemo.invalidateCurrent(event.getPersister().getMappedClass());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		RequestQueryMemo.invalidateCurrent(event.getPersister().getMappedClass());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		RequestQueryMemo.invalidateCurrent(event.getPersister().getMappedClass());
+	}
+
+	// 커밋 후가 아니라 flush 시점에 바로 지운다.
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
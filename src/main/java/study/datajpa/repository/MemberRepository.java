@@ -5,6 +5,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.datasource.LowPriority;
 import study.datajpa.repository.dto.MemberDto;
 import study.datajpa.entity.Member;
 
@@ -47,10 +49,12 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 	// 동적쿼리는 querydsl 쓴다. => 깔끔하고 유지보수가 좋다.
 
 	// 유저네임만 필요한 경우
+	@LowPriority	// >> 33-1. 풀이 밀리면 먼저 버려도 되는 조회
 	@Query("select m.username from Member m")
 	List<String> findUsernameList();
 
 	// >> 12-1. DTO를 조회하고 싶을 때 (new 사용)
+	@LowPriority
 	@Query("select new study.datajpa.repository.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
 	List<MemberDto> findMemberDto();
 
@@ -69,6 +73,9 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 	// totalcount Query는 단순히 username만 세서 계산하면 되는데
 	// 그냥 @Query만 쓰면 모든걸 join하고 확인하기때문에 성능 저하 발생
 	// 그래서 @Query 안에 countQuery라는걸 만들고 따로 totalCount 계산하는 전용 쿼리 작성
+	// >> 16-1. /members/page 가 MemberDto 로 바꿀 때 팀 이름을 읽으므로 팀을 같이 가져온다. (행마다 팀 조회 N+1 방지)
+	// ManyToOne 이라 fetch join 해도 행 수가 늘지 않아 DB 에서 그대로 페이징된다.
+	@EntityGraph(attributePaths = {"team"})
 	@Query(value = "select m from Member m left join m.team t",
 			countQuery = "select count(m.username) from Member m")
 	Page<Member> findPageByAge(int age, Pageable pageable);
@@ -79,6 +86,7 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 	// >> 19. clearAutomatically = True // 사용하면 자동으로 쿼리날린 후 영속성 컨텍스트를 날려준다.
 	@Modifying(clearAutomatically = true)	// 있으면 executeUpdate() 실행, 없으면 getResultList() 실행
 			    // 수정을 할 것이므로 Modifying을 사용
+	@Transactional	// 호출하는 쪽(컨트롤러 등)에 트랜잭션이 없어도 실행되도록 (있으면 거기에 참여)
 	@Query("update Member m set m.age = m.age + 1 where m.age >= :age")
 	int bulkAgePlus(@Param("age") int age);
 
@@ -0,0 +1,11 @@
+package study.datajpa.repository;
+
+import study.datajpa.shard.ShardAware;
+import study.datajpa.stats.TeamStats;
+
+public interface TeamRepositoryCustom {
+
+	// 팀 멤버 수 / 나이 합계, 최소, 최대 (증분 집계에서 바로 꺼낸다)
+	@ShardAware
+	TeamStats findTeamStats(Long teamId);
+}
@@ -0,0 +1,39 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa.stats.TeamStats;
+import study.datajpa.stats.TeamStatsReconciler;
+import study.datajpa.stats.TeamStatsStore;
+
+import java.util.Collections;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+	private final TeamStatsStore teamStatsStore;
+	private final TeamStatsReconciler teamStatsReconciler;
+
+	// 보통은 메모리에서 O(1)로 꺼내고, 아직 재집계 전(dirty)인 팀만 그 자리에서 맞춘다.
+	// 전체 재집계가 필요할 때는 한 호출만 GROUP BY 를 돌리고, 나머지는 그동안 이전 값을 받는다.
+	// (이전 값도 없는 기동 직후에는 돌고 있는 재집계를 기다린다)
+	@Override
+	public TeamStats findTeamStats(Long teamId) {
+		return teamStatsStore.get(teamId).orElseGet(() -> {
+			if (teamStatsStore.isAllDirty()) {
+				if (!teamStatsReconciler.reconcileAll()) {
+					Optional<TeamStats> stale = teamStatsStore.lastKnown(teamId);
+					if (stale.isPresent()) {
+						return stale.get();
+					}
+					teamStatsReconciler.awaitFullReconcile();
+				}
+			} else {
+				teamStatsReconciler.reconcile(Collections.singletonList(teamId));
+			}
+			return teamStatsStore.get(teamId)
+				.or(() -> teamStatsStore.lastKnown(teamId))
+				.orElseGet(() -> TeamStats.empty(teamId));
+		});
+	}
+}
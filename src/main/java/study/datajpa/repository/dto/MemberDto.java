@@ -1,6 +1,7 @@
 package study.datajpa.repository.dto;
 
 import lombok.Data;
+import study.datajpa.entity.Member;
 
 @Data
 public class MemberDto {
@@ -14,4 +15,9 @@ public class MemberDto {
 		this.username = username;
 		this.teamName = teamName;
 	}
+
+	// 팀이 지연 로딩이면 여기서 팀 조회 쿼리가 나간다.
+	public MemberDto(Member member) {
+		this(member.getId(), member.getUsername(), member.getTeam() == null ? null : member.getTeam().getName());
+	}
 }
@@ -0,0 +1,12 @@
+package study.datajpa.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 샤드를 스스로 다루는 레포지토리 메소드 (ShardRoutingAspect 가 라우팅하지 않고 그대로 부른다)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardAware {
+}
@@ -0,0 +1,127 @@
+package study.datajpa.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import study.datajpa.datasource.ConnectionPoolMetrics;
+import study.datajpa.id.BlockSequenceGenerator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// 샤딩을 끄면 기본 DataSource 하나짜리 Shards 만 만든다.
+// 켜면 샤드 풀을 직접 만들고 JPA 가 쓰는 DataSource 를 ShardRoutingDataSource 로 바꾼다.
+// (DataSource 빈이 생기므로 spring.datasource 자동 설정은 빠지고 0번 샤드가 그 자리를 대신한다)
+@Configuration
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardConfig {
+
+	@Bean
+	@ConditionalOnProperty(prefix = "datajpa.shard", name = "enabled", havingValue = "false", matchIfMissing = true)
+	public Shards singleShard(DataSource dataSource) {
+		return Shards.single(dataSource);
+	}
+
+	@Configuration
+	@ConditionalOnProperty(prefix = "datajpa.shard", name = "enabled", havingValue = "true")
+	static class ShardedConfig implements DisposableBean {
+
+		private final List<HikariDataSource> pools = new ArrayList<>();
+
+		// OSIV 는 요청 내내 EntityManager 하나(커넥션 하나)를 붙잡으므로 요청 안에서 샤드를 바꿀 수 없다.
+		@Bean
+		public Shards shards(ShardProperties properties, ConnectionPoolMetrics poolMetrics, Environment environment) {
+			if (properties.getNodes().isEmpty()) {
+				throw new IllegalStateException("datajpa.shard.nodes must not be empty when sharding is enabled");
+			}
+			if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+				throw new IllegalStateException("spring.jpa.open-in-view must be false when sharding is enabled");
+			}
+			List<DataSource> dataSources = new ArrayList<>();
+			int workers = 0;
+			for (int i = 0; i < properties.getNodes().size(); i++) {
+				ShardProperties.Node node = properties.getNodes().get(i);
+				HikariDataSource dataSource = new HikariDataSource();
+				dataSource.setPoolName("member-shard-" + i);
+				dataSource.setJdbcUrl(node.getUrl());
+				dataSource.setUsername(node.getUsername());
+				dataSource.setPassword(node.getPassword());
+				dataSource.setMaximumPoolSize(node.getMaximumPoolSize());
+				dataSource.setMetricsTrackerFactory(poolMetrics);
+				pools.add(dataSource);
+				dataSources.add(dataSource);
+				workers += node.getMaximumPoolSize();
+			}
+			return Shards.of(dataSources, new ShardIdGenerator(properties.getNodeId()), workers);
+		}
+
+		@Bean
+		public DataSource dataSource(Shards shards) {
+			return new ShardRoutingDataSource(shards);
+		}
+
+		@Bean
+		public ShardRoutingAspect shardRoutingAspect(Shards shards) {
+			return new ShardRoutingAspect(shards);
+		}
+
+		// - ID 생성기(BlockSequenceGenerator)가 시퀀스 대신 샤드 번호가 들어간 ID 를 쓰도록 넘겨준다.
+		// - ddl-auto 는 기본 커넥션(0번 샤드)에만 적용되므로 나머지 샤드에도 같은 스키마 작업을 한다.
+		@Bean
+		public HibernatePropertiesCustomizer shardHibernateCustomizer(Shards shards) {
+			return hibernateProperties -> {
+				hibernateProperties.put(BlockSequenceGenerator.SHARD_ID_GENERATOR_SETTING, shards.idGenerator());
+				hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+					(IntegratorProvider) () -> Collections.singletonList(new ShardSchemaIntegrator(shards.count())));
+			};
+		}
+
+		@Override
+		public void destroy() {
+			pools.forEach(HikariDataSource::close);
+		}
+	}
+
+	// create-drop 의 종료 시 drop 은 0번 샤드에만 한다.
+	private static class ShardSchemaIntegrator implements Integrator {
+
+		private final int shardCount;
+
+		ShardSchemaIntegrator(int shardCount) {
+			this.shardCount = shardCount;
+		}
+
+		@Override
+		public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+							  SessionFactoryServiceRegistry serviceRegistry) {
+			Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+			for (int shard = 1; shard < shardCount; shard++) {
+				ShardContext.call(shard, () -> {
+					SchemaManagementToolCoordinator.process(metadata, serviceRegistry, settings, action -> {
+					});
+					return null;
+				});
+			}
+		}
+
+		@Override
+		public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		}
+	}
+}
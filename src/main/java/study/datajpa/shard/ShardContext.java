@@ -0,0 +1,39 @@
+package study.datajpa.shard;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+// >> 41-3. 지금 스레드가 일하는 샤드
+// ShardRoutingDataSource 는 커넥션을 고를 때, BlockSequenceGenerator 는 ID 에 샤드 번호를 넣을 때 이 값을 본다.
+// 정해지지 않았으면 0번 샤드 (샤딩을 끄면 0번이 유일한 DB)
+// 트랜잭션은 시작한 샤드의 커넥션을 끝까지 쓰므로, 트랜잭션 안에서는 다른 샤드로 바꿀 수 없다.
+public final class ShardContext {
+
+	private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+	private ShardContext() {
+	}
+
+	public static int current() {
+		Integer shard = CURRENT.get();
+		return shard == null ? 0 : shard;
+	}
+
+	public static <T> T call(int shard, Supplier<T> work) {
+		Integer previous = CURRENT.get();
+		if (TransactionSynchronizationManager.isActualTransactionActive() && current() != shard) {
+			throw new IllegalStateException("transaction is bound to shard " + current() + ", cannot use shard " + shard);
+		}
+		CURRENT.set(shard);
+		try {
+			return work.get();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+}
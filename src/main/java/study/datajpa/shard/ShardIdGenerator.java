@@ -0,0 +1,80 @@
+package study.datajpa.shard;
+
+import java.time.Instant;
+
+// >> 41-1. 샤드 간에도 겹치지 않는 64비트 ID (snowflake 방식)
+// | 0 | timestamp(ms, 41) | sequence(10) | shard(8) | node(4) |
+// - 시간과 sequence 가 앞자리에 있으므로 ID 순서 = 생성 순서 (샤드를 합쳐서 정렬해도 생성 순서가 된다.
+//   같은 ms 안에서도 샤드 번호가 아니라 sequence 로 순서가 정해진다)
+// - 샤드 번호가 들어 있으므로 ID 만 보고 어느 샤드에 있는지 안다 (조회 시 브로드캐스트 불필요)
+// - node 는 같은 샤드에 쓰는 애플리케이션 인스턴스를 구분한다.
+public class ShardIdGenerator {
+
+	static final long EPOCH = Instant.parse("2021-01-01T00:00:00Z").toEpochMilli();
+
+	static final int SEQUENCE_BITS = 10;
+	static final int NODE_BITS = 4;
+	static final int SHARD_BITS = 8;
+
+	public static final int MAX_SHARDS = 1 << SHARD_BITS;
+	public static final int MAX_NODES = 1 << NODE_BITS;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+	private static final int NODE_SHIFT = 0;
+	private static final int SHARD_SHIFT = NODE_BITS;
+	private static final int SEQUENCE_SHIFT = NODE_BITS + SHARD_BITS;
+	private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + NODE_BITS + SHARD_BITS;
+
+	private final int node;
+
+	private long lastMillis = -1;
+	private long sequence;
+
+	public ShardIdGenerator(int node) {
+		if (node < 0 || node >= MAX_NODES) {
+			throw new IllegalArgumentException("node must be in [0, " + MAX_NODES + "): " + node);
+		}
+		this.node = node;
+	}
+
+	public synchronized long next(int shard) {
+		if (shard < 0 || shard >= MAX_SHARDS) {
+			throw new IllegalArgumentException("shard must be in [0, " + MAX_SHARDS + "): " + shard);
+		}
+		long millis = nextMillis();
+		return (millis - EPOCH) << TIMESTAMP_SHIFT
+			| sequence << SEQUENCE_SHIFT
+			| (long) shard << SHARD_SHIFT
+			| (long) node << NODE_SHIFT;
+	}
+
+	// 시계가 뒤로 가거나 1ms 안에 sequence 를 다 쓰면 기다리지 않고 마지막 시각을 1ms 씩 앞당겨 쓴다.
+	// (실제 시계가 따라잡을 때까지 ID 의 시각이 조금 앞서갈 뿐, 단조 증가와 유일성은 유지된다)
+	private long nextMillis() {
+		long now = currentMillis();
+		if (now > lastMillis) {
+			lastMillis = now;
+			sequence = 0;
+		} else if (++sequence > SEQUENCE_MASK) {
+			lastMillis++;
+			sequence = 0;
+		}
+		return lastMillis;
+	}
+
+	long currentMillis() {
+		return System.currentTimeMillis();
+	}
+
+	public static int shardOf(long id) {
+		return (int) (id >>> SHARD_SHIFT) & (MAX_SHARDS - 1);
+	}
+
+	public static int nodeOf(long id) {
+		return (int) (id >>> NODE_SHIFT) & (MAX_NODES - 1);
+	}
+
+	public static Instant timestampOf(long id) {
+		return Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH);
+	}
+}
@@ -0,0 +1,29 @@
+package study.datajpa.shard;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.shard")
+public class ShardProperties {
+
+	private boolean enabled = false;
+
+	// 이 인스턴스의 ID 생성기 노드 번호 (인스턴스마다 달라야 한다)
+	private int nodeId = 0;
+
+	// 목록 순서가 곧 샤드 번호다. 이미 데이터가 있는 샤드의 순서를 바꾸면 안 된다.
+	private List<Node> nodes = new ArrayList<>();
+
+	@Getter @Setter
+	public static class Node {
+		private String url;
+		private String username = "sa";
+		private String password = "";
+		private int maximumPoolSize = 5;
+	}
+}
@@ -0,0 +1,47 @@
+package study.datajpa.shard;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// >> 41-2. 어느 샤드로 보낼지 결정
+// 팀과 그 팀의 멤버는 같은 샤드에 둔다 (member -> team 조인이 샤드 안에서 끝난다).
+// 팀/멤버 ID 에 샤드 번호가 들어 있으므로 기존 행은 해시를 다시 계산하지 않고 ID 로 바로 찾아간다.
+// 새 팀, 팀 없는 멤버만 새로 자리를 정한다.
+public class ShardRouter {
+
+	private final int shardCount;
+	private final AtomicInteger placement = new AtomicInteger();
+
+	public ShardRouter(int shardCount) {
+		if (shardCount < 1 || shardCount > ShardIdGenerator.MAX_SHARDS) {
+			throw new IllegalArgumentException("shard count must be in [1, " + ShardIdGenerator.MAX_SHARDS + "]: " + shardCount);
+		}
+		this.shardCount = shardCount;
+	}
+
+	public int shardCount() {
+		return shardCount;
+	}
+
+	// team_id 또는 member_id 로 샤드 찾기
+	public int shardOf(long id) {
+		int shard = ShardIdGenerator.shardOf(id);
+		if (shard >= shardCount) {
+			throw new IllegalArgumentException("id " + id + " belongs to unknown shard " + shard);
+		}
+		return shard;
+	}
+
+	// 팀이 있으면 팀의 샤드, 없으면 새로 배치
+	public int shardForMember(Long teamId) {
+		return teamId == null ? place() : shardOf(teamId);
+	}
+
+	public int shardForNewTeam() {
+		return place();
+	}
+
+	// 돌아가면서 배치 (해시 배치와 달리 샤드 수가 적어도 고르게 퍼진다)
+	private int place() {
+		return Math.floorMod(placement.getAndIncrement(), shardCount);
+	}
+}
@@ -0,0 +1,300 @@
+package study.datajpa.shard;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// >> 41-4. MemberRepository / TeamRepository 호출을 샤드로 보낸다.
+// - 단일 샤드 : save 는 엔티티의 ID(있으면) -> 팀 -> 새로 배치 순서로, findById/deleteById 는 ID 로 샤드를 정한다.
+//              여러 건(saveAll, findAllById, deleteAll(entities)) 은 샤드별로 나눠서 부른다.
+// - 전체 샤드 : 그 밖의 조회/벌크 수정은 샤드마다 병렬로 보내고(scatter) 결과를 모은다(gather).
+//              Pageable/Sort 가 있으면 샤드별로 정렬해 받아서 k-way 병합한다. 숫자는 더하고, 단건은 하나만 있어야 한다.
+// 트랜잭션 안에서는 그 트랜잭션의 샤드에만 쓸 수 있다. (새 엔티티도 그 샤드에 배치)
+// 샤드마다 트랜잭션이 따로이므로 bulkAgePlus 같은 전체 샤드 쓰기는 샤드 단위로만 원자적이다.
+// 샤드별 호출마다 admission control 을 거치도록 그보다 바깥에서 실행한다.
+@Aspect
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class ShardRoutingAspect {
+
+	private static final Set<String> SAVE = Set.of("save", "saveAndFlush");
+	private static final Set<String> SAVE_ALL = Set.of("saveAll", "saveAllAndFlush");
+	private static final Set<String> BY_ID = Set.of("findById", "getById", "getOne", "existsById", "deleteById");
+	private static final Set<String> ALL_BY_IDS = Set.of("findAllById", "deleteAllById", "deleteAllByIdInBatch");
+	private static final Set<String> ALL_ENTITIES = Set.of("deleteAll", "deleteAllInBatch", "deleteInBatch");
+
+	private final Shards shards;
+
+	public ShardRoutingAspect(Shards shards) {
+		this.shards = shards;
+	}
+
+	// this(A) || this(B) 로 묶으면 JDK 프록시의 런타임 검사가 앞쪽 타입만 보므로 레포지토리마다 따로 건다.
+	@Around("this(study.datajpa.repository.MemberRepository)")
+	public Object routeMember(ProceedingJoinPoint joinPoint) throws Throwable {
+		return route(joinPoint);
+	}
+
+	@Around("this(study.datajpa.repository.TeamRepository)")
+	public Object routeTeam(ProceedingJoinPoint joinPoint) throws Throwable {
+		return route(joinPoint);
+	}
+
+	private Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		String name = method.getName();
+		Object[] args = joinPoint.getArgs();
+
+		if (AnnotatedElementUtils.hasAnnotation(method, ShardAware.class) || name.equals("flush")) {
+			return joinPoint.proceed();
+		}
+		// scatter 는 다른 스레드에서 나머지 advice 체인을 부르므로 joinPoint 대신 호출 자체를 복제해서 넘긴다.
+		ProxyMethodInvocation invocation = (ProxyMethodInvocation) ExposeInvocationInterceptor.currentInvocation();
+		if (args.length == 1 && args[0] != null) {
+			if (SAVE.contains(name) || name.equals("delete")) {
+				return onShard(shardOfEntity(args[0]), invocation, args);
+			}
+			if (BY_ID.contains(name)) {
+				return onShard(shards.shardOf((Long) args[0]), invocation, args);
+			}
+			if (SAVE_ALL.contains(name) || ALL_ENTITIES.contains(name)) {
+				return perShard(groupBy((Iterable<?>) args[0], this::shardOfEntity), invocation, args);
+			}
+			if (ALL_BY_IDS.contains(name)) {
+				return perShard(groupBy((Iterable<?>) args[0], id -> shards.shardOf((Long) id)), invocation, args);
+			}
+		}
+		return scatter(method, invocation, args);
+	}
+
+	// 팀과 멤버는 같은 샤드에. ID 가 있으면 ID 에 샤드 번호가 들어 있다.
+	private int shardOfEntity(Object entity) {
+		if (entity instanceof Member) {
+			Member member = (Member) entity;
+			if (member.getId() != null) {
+				return shards.shardOf(member.getId());
+			}
+			Team team = member.getTeam();
+			return team != null && team.getId() != null ? shards.shardOf(team.getId()) : placement();
+		}
+		if (entity instanceof Team && ((Team) entity).getId() != null) {
+			return shards.shardOf(((Team) entity).getId());
+		}
+		return placement();
+	}
+
+	// 트랜잭션 안에서 만드는 새 엔티티는 그 트랜잭션의 샤드에 둔다.
+	private int placement() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+			? ShardContext.current() : shards.shardForNewTeam();
+	}
+
+	private static Map<Integer, List<Object>> groupBy(Iterable<?> items, ToIntFunction<Object> shardOf) {
+		Map<Integer, List<Object>> groups = new LinkedHashMap<>();
+		for (Object item : items) {
+			groups.computeIfAbsent(shardOf.applyAsInt(item), shard -> new ArrayList<>()).add(item);
+		}
+		return groups;
+	}
+
+	private static Object onShard(int shard, ProxyMethodInvocation invocation, Object[] args) {
+		return ShardContext.call(shard, () -> proceed(invocation, args));
+	}
+
+	// 샤드가 하나면 그대로, 여럿이면 샤드마다 따로 불러서 결과 리스트를 이어 붙인다. (한 트랜잭션 안에서는 안 된다)
+	private static Object perShard(Map<Integer, List<Object>> groups, ProxyMethodInvocation invocation, Object[] args) {
+		if (groups.isEmpty()) {
+			return proceed(invocation, args);
+		}
+		if (groups.size() > 1 && TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException("cannot write to shards " + groups.keySet() + " in one transaction");
+		}
+		List<Object> results = new ArrayList<>();
+		boolean returnsList = false;
+		for (Map.Entry<Integer, List<Object>> group : groups.entrySet()) {
+			Object result = onShard(group.getKey(), invocation, new Object[]{group.getValue()});
+			if (result instanceof List) {
+				results.addAll((List<?>) result);
+				returnsList = true;
+			}
+		}
+		return returnsList ? results : null;
+	}
+
+	private Object scatter(Method method, ProxyMethodInvocation invocation, Object[] args) {
+		Class<?> returnType = method.getReturnType();
+		if (Stream.class.isAssignableFrom(returnType) || Future.class.isAssignableFrom(returnType)) {
+			throw new UnsupportedOperationException(method.getName() + " is not supported across shards");
+		}
+
+		// 페이징은 샤드마다 0 페이지부터 offset + size 개까지 받아서 병합한 뒤 offset 만큼 버린다.
+		// 뒤 페이지로 갈수록 샤드 수 x (offset + size) 만큼 읽으므로 깊은 페이지는 키셋 페이징이 낫다.
+		Pageable pageable = null;
+		Sort sort = null;
+		Object[] shardArgs = args.clone();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] instanceof Pageable && ((Pageable) args[i]).isPaged()) {
+				pageable = (Pageable) args[i];
+				sort = withIdTiebreak(pageable.getSort());
+				shardArgs[i] = PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()), sort);
+			} else if (args[i] instanceof Sort && ((Sort) args[i]).isSorted()) {
+				sort = withIdTiebreak((Sort) args[i]);
+				shardArgs[i] = sort;
+			}
+		}
+
+		List<Object> results = shards.scatter(shard -> proceed(invocation, shardArgs));
+
+		if (Page.class.isAssignableFrom(returnType) || Slice.class.isAssignableFrom(returnType)) {
+			List<List<Object>> contents = new ArrayList<>();
+			long total = 0;
+			boolean hasNext = false;
+			for (Object result : results) {
+				Slice<?> slice = (Slice<?>) result;
+				contents.add(new ArrayList<>(slice.getContent()));
+				total += slice instanceof Page ? ((Page<?>) slice).getTotalElements() : slice.getNumberOfElements();
+				hasNext |= slice.hasNext();
+			}
+			Pageable target = pageable == null ? Pageable.unpaged() : pageable;
+			long skip = target.isPaged() ? target.getOffset() : 0;
+			int limit = target.isPaged() ? target.getPageSize() : Integer.MAX_VALUE;
+			List<Object> content = merge(contents, comparator(sort), skip, limit);
+			if (Page.class.isAssignableFrom(returnType)) {
+				return new PageImpl<>(content, target, total);
+			}
+			return new SliceImpl<>(content, target, hasNext || total > skip + content.size());
+		}
+		if (List.class.isAssignableFrom(returnType) || returnType == Iterable.class) {
+			List<List<Object>> lists = new ArrayList<>();
+			for (Object result : results) {
+				List<Object> list = new ArrayList<>();
+				((Iterable<?>) result).forEach(list::add);
+				lists.add(list);
+			}
+			if (sort == null) {
+				List<Object> all = new ArrayList<>();
+				lists.forEach(all::addAll);
+				return all;
+			}
+			return pageable == null
+				? merge(lists, comparator(sort), 0, Integer.MAX_VALUE)
+				: merge(lists, comparator(sort), pageable.getOffset(), pageable.getPageSize());
+		}
+		if (returnType == void.class) {
+			return null;
+		}
+		if (returnType == long.class || returnType == Long.class) {
+			return results.stream().mapToLong(result -> ((Number) result).longValue()).sum();
+		}
+		if (returnType == int.class || returnType == Integer.class) {
+			return results.stream().mapToInt(result -> ((Number) result).intValue()).sum();
+		}
+		if (returnType == boolean.class || returnType == Boolean.class) {
+			return results.stream().anyMatch(Boolean.TRUE::equals);
+		}
+		if (returnType == Optional.class) {
+			return Optional.ofNullable(single(results.stream().map(result -> ((Optional<?>) result).orElse(null))));
+		}
+		return single(results.stream());
+	}
+
+	// 단건 조회는 모든 샤드를 합쳐서 하나여야 한다. (스프링 데이터 JPA 와 같은 예외)
+	private static Object single(Stream<?> results) {
+		List<?> found = results.filter(Objects::nonNull).collect(Collectors.toList());
+		if (found.size() > 1) {
+			throw new IncorrectResultSizeDataAccessException(1, found.size());
+		}
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	// 안쪽 advice(@AfterReturning 등)는 ExposeInvocationInterceptor 의 스레드 로컬에서 호출을 꺼내므로 거기에 걸고 부른다.
+	private static Object proceed(ProxyMethodInvocation invocation, Object[] args) {
+		MethodInvocation clone = invocation.invocableClone(args);
+		try {
+			return ExposeInvocationInterceptor.INSTANCE.invoke(clone);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UndeclaredThrowableException(e);
+		}
+	}
+
+	// 정렬 기준이 같은 행은 ID 로 순서를 정해야 샤드별 결과와 병합 결과가 같은 순서가 된다.
+	private static Sort withIdTiebreak(Sort sort) {
+		return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+	}
+
+	// H2 기본 정렬과 같게 오름차순은 null 이 먼저, 내림차순은 null 이 나중
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Comparator<Object> comparator(Sort sort) {
+		Comparator<Object> comparator = (a, b) -> 0;
+		if (sort == null) {
+			return comparator;
+		}
+		for (Sort.Order order : sort) {
+			Comparator<Object> property = Comparator.comparing(
+				item -> (Comparable) PropertyAccessorFactory.forBeanPropertyAccess(item).getPropertyValue(order.getProperty()),
+				Comparator.nullsFirst(Comparator.naturalOrder()));
+			comparator = comparator.thenComparing(order.isAscending() ? property : property.reversed());
+		}
+		return comparator;
+	}
+
+	// 이미 정렬된 리스트 k 개를 힙으로 병합: 각 리스트의 맨 앞만 힙에 두므로 O(n log k)
+	static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> comparator, long skip, int limit) {
+		PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+			(a, b) -> comparator.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+		for (int i = 0; i < sorted.size(); i++) {
+			if (!sorted.get(i).isEmpty()) {
+				heads.add(new int[]{i, 0});
+			}
+		}
+		List<T> merged = new ArrayList<>();
+		long position = 0;
+		while (!heads.isEmpty() && merged.size() < limit) {
+			int[] head = heads.poll();
+			List<T> list = sorted.get(head[0]);
+			if (position++ >= skip) {
+				merged.add(list.get(head[1]));
+			}
+			if (++head[1] < list.size()) {
+				heads.add(head);
+			}
+		}
+		return merged;
+	}
+}
@@ -0,0 +1,26 @@
+package study.datajpa.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// JPA(EntityManagerFactory)가 쓰는 DataSource. 커넥션을 잡는 순간의 ShardContext 로 샤드 풀을 고른다.
+// 트랜잭션은 시작할 때 커넥션을 잡으므로 트랜잭션 하나는 샤드 하나에서만 돈다.
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+	ShardRoutingDataSource(Shards shards) {
+		Map<Object, Object> targets = new HashMap<>();
+		for (int shard = 0; shard < shards.count(); shard++) {
+			targets.put(shard, shards.dataSource(shard));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.dataSource(0));
+		setLenientFallback(false);
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return ShardContext.current();
+	}
+}
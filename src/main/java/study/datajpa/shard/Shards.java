@@ -0,0 +1,135 @@
+package study.datajpa.shard;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+// >> 41. team_id 기준 Member 샤딩
+// 멤버 테이블 하나에 모든 쓰기와 bulkAgePlus 가 몰리지 않도록 N 개의 DB 에 나눠 담는다.
+// 팀과 그 팀의 멤버는 같은 샤드에 둔다. (member -> team 조인, 팀 통계 GROUP BY 가 샤드 안에서 끝난다)
+// - JPA : ShardRoutingDataSource 가 ShardContext 로 샤드를 고르고, ShardRoutingAspect 가 레포지토리 호출마다 샤드를 정한다.
+// - JDBC 벌크 작업(import/export)과 팀 통계/유저네임 캐시는 여기서 샤드별 DataSource 를 꺼내거나 scatter 로 돌린다.
+// 샤딩을 끄면 기본 DataSource 하나짜리 (scatter 도 그 자리에서 한 번만 부른다)
+public class Shards implements AutoCloseable {
+
+	private final List<DataSource> dataSources;
+	private final ShardRouter router;
+	private final ShardIdGenerator idGenerator;
+	private final ExecutorService executor;
+
+	private Shards(List<DataSource> dataSources, ShardIdGenerator idGenerator, int workers) {
+		this.dataSources = List.copyOf(dataSources);
+		this.router = new ShardRouter(dataSources.size());
+		this.idGenerator = idGenerator;
+		if (idGenerator == null) {
+			this.executor = null;
+		} else {
+			AtomicInteger threads = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+				Thread thread = new Thread(runnable, "member-shard-" + threads.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public static Shards single(DataSource dataSource) {
+		return new Shards(Collections.singletonList(dataSource), null, 0);
+	}
+
+	// workers: scatter 에 쓰는 스레드 수 (스레드 하나가 커넥션 하나를 잡으므로 샤드 풀 크기 합이면 충분하다)
+	public static Shards of(List<DataSource> dataSources, ShardIdGenerator idGenerator, int workers) {
+		return new Shards(dataSources, idGenerator, workers);
+	}
+
+	public boolean isEnabled() {
+		return idGenerator != null;
+	}
+
+	public int count() {
+		return dataSources.size();
+	}
+
+	public DataSource dataSource(int shard) {
+		return dataSources.get(shard);
+	}
+
+	// team_id 또는 member_id 로 샤드 찾기
+	public int shardOf(long id) {
+		return isEnabled() ? router.shardOf(id) : 0;
+	}
+
+	public int shardForNewTeam() {
+		return isEnabled() ? router.shardForNewTeam() : 0;
+	}
+
+	// 팀이 있으면 팀의 샤드, 없으면 새로 배치
+	public int shardForMember(Long teamId) {
+		return isEnabled() ? router.shardForMember(teamId) : 0;
+	}
+
+	// 샤드 번호가 들어간 ID (샤딩을 끄면 시퀀스를 쓴다)
+	public long nextId(int shard) {
+		if (!isEnabled()) {
+			throw new IllegalStateException("sharding is disabled");
+		}
+		return idGenerator.next(shard);
+	}
+
+	ShardIdGenerator idGenerator() {
+		return idGenerator;
+	}
+
+	// 모든 샤드에 병렬로 보내고(scatter) 샤드 순서대로 결과를 돌려준다(gather). 하나라도 실패하면 나머지는 취소한다.
+	// 지금 스레드의 샤드(트랜잭션이 있으면 그 샤드)는 이 스레드에서 돌려서 커밋 전 변경도 보이게 한다.
+	public <T> List<T> scatter(IntFunction<T> work) {
+		int local = ShardContext.current();
+		if (!isEnabled()) {
+			return Collections.singletonList(ShardContext.call(local, () -> work.apply(local)));
+		}
+		List<Future<T>> futures = new ArrayList<>(count());
+		for (int shard = 0; shard < count(); shard++) {
+			int target = shard;
+			futures.add(shard == local ? null : executor.submit(() -> ShardContext.call(target, () -> work.apply(target))));
+		}
+		try {
+			T localResult = ShardContext.call(local, () -> work.apply(local));
+			List<T> results = new ArrayList<>(count());
+			for (int shard = 0; shard < count(); shard++) {
+				results.add(shard == local ? localResult : futures.get(shard).get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("shard query interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException("shard query failed", e.getCause());
+		} finally {
+			for (Future<T> future : futures) {
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
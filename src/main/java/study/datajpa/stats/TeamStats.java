@@ -0,0 +1,32 @@
+package study.datajpa.stats;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// 팀별 집계 스냅샷 (불변)
+@Getter
+@ToString
+public class TeamStats {
+
+	private final Long teamId;
+	private final long memberCount;
+	private final long ageSum;
+	private final Integer minAge;	// 멤버가 없으면 null
+	private final Integer maxAge;
+
+	public TeamStats(Long teamId, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+		this.teamId = teamId;
+		this.memberCount = memberCount;
+		this.ageSum = ageSum;
+		this.minAge = minAge;
+		this.maxAge = maxAge;
+	}
+
+	public static TeamStats empty(Long teamId) {
+		return new TeamStats(teamId, 0, 0, null, null);
+	}
+
+	public double getAverageAge() {
+		return memberCount == 0 ? 0 : (double) ageSum / memberCount;
+	}
+}
@@ -0,0 +1,22 @@
+package study.datajpa.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// 벌크 수정(@Modifying)과 JPQL 배치 삭제(deleteAllInBatch, deleteAllByIdInBatch ...)는
+// 엔티티 리스너를 거치지 않으므로 (영속성 컨텍스트 무시) 전체 재집계 대상으로 표시한다.
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class TeamStatsBulkUpdateAspect {
+
+	private final TeamStatsStore teamStatsStore;
+
+	@AfterReturning("this(study.datajpa.repository.MemberRepository)"
+		+ " && (execution(@org.springframework.data.jpa.repository.Modifying * *(..)) || execution(* *InBatch(..)))")
+	public void afterBulkUpdate() {
+		teamStatsStore.markAllDirty();
+	}
+}
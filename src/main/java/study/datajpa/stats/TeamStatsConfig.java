@@ -0,0 +1,10 @@
+package study.datajpa.stats;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// TeamStatsReconciler 주기 실행
+@Configuration
+@EnableScheduling
+public class TeamStatsConfig {
+}
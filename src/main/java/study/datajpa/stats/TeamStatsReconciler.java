@@ -0,0 +1,124 @@
+package study.datajpa.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.shard.Shards;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// >> 34-1. dirty 팀만 모아서 배치로 GROUP BY 재집계
+@Component
+@RequiredArgsConstructor
+public class TeamStatsReconciler {
+
+	private static final int BATCH_SIZE = 500;
+
+	@PersistenceContext
+	private final EntityManager em;
+	private final TeamStatsStore teamStatsStore;
+	private final Shards shards;
+
+	// 전체 재집계는 한 번에 하나만 돈다.
+	private final ReentrantLock fullReconcileLock = new ReentrantLock();
+	private final LongAdder fullReconciles = new LongAdder();
+
+	@Scheduled(fixedDelayString = "${datajpa.team-stats.reconcile-interval:5000}")
+	public void reconcile() {
+		reconcileAll();
+
+		List<Long> dirtyTeams = teamStatsStore.dirtyTeams();
+		for (int from = 0; from < dirtyTeams.size(); from += BATCH_SIZE) {
+			reconcile(dirtyTeams.subList(from, Math.min(from + BATCH_SIZE, dirtyTeams.size())));
+		}
+	}
+
+	// 애스펙트/리스너를 거치지 않는 변경(다른 노드, 네이티브 SQL)이 있어도 틀린 값이 계속 남지 않도록
+	// 주기적으로 전체를 다시 맞춘다. (표시만 하고 실제 재집계는 다음 reconcile 에서)
+	@Scheduled(initialDelayString = "${datajpa.team-stats.full-reconcile-interval:600000}",
+		fixedDelayString = "${datajpa.team-stats.full-reconcile-interval:600000}")
+	public void scheduleFullReconcile() {
+		teamStatsStore.markAllDirty();
+	}
+
+	// 전체 dirty 일 때만 전체 GROUP BY. 이미 다른 스레드가 돌리고 있으면 기다리지 않고 false
+	// (트랜잭션을 열면 커넥션부터 잡으므로 트랜잭션 없이 쿼리 하나로 돌린다)
+	public boolean reconcileAll() {
+		if (!fullReconcileLock.tryLock()) {
+			return false;
+		}
+		try {
+			if (teamStatsStore.isAllDirty()) {
+				long sequence = teamStatsStore.currentSequence();
+				teamStatsStore.reconciledAll(aggregate(null), sequence);
+				fullReconciles.increment();
+			}
+			return true;
+		} finally {
+			fullReconcileLock.unlock();
+		}
+	}
+
+	// 돌고 있는 전체 재집계가 끝날 때까지 기다린다. (새로 돌리지는 않는다)
+	public void awaitFullReconcile() {
+		fullReconcileLock.lock();
+		fullReconcileLock.unlock();
+	}
+
+	public long getFullReconciles() {
+		return fullReconciles.sum();
+	}
+
+	@Transactional(readOnly = true)
+	public void reconcile(List<Long> teamIds) {
+		long sequence = teamStatsStore.currentSequence();
+		List<TeamStats> result = aggregate(teamIds);
+
+		List<Long> missing = new ArrayList<>(teamIds);
+		for (TeamStats stats : result) {
+			teamStatsStore.reconciled(stats.getTeamId(), stats, sequence);
+			missing.remove(stats.getTeamId());
+		}
+		// 멤버가 한 명도 없는 팀
+		for (Long teamId : missing) {
+			teamStatsStore.reconciled(teamId, TeamStats.empty(teamId), sequence);
+		}
+	}
+
+	// teamIds 가 null 이면 전체 팀. 팀과 멤버는 같은 샤드에 있으므로 샤드마다 따로 GROUP BY 해서 이어 붙인다.
+	private List<TeamStats> aggregate(List<Long> teamIds) {
+		if (teamIds != null && teamIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<Integer, List<Long>> byShard = teamIds == null
+			? null : teamIds.stream().collect(Collectors.groupingBy(shards::shardOf));
+		List<TeamStats> result = new ArrayList<>();
+		shards.scatter(shard -> teamIds == null
+				? aggregateShard(null)
+				: aggregateShard(byShard.getOrDefault(shard, Collections.emptyList())))
+			.forEach(result::addAll);
+		return result;
+	}
+
+	private List<TeamStats> aggregateShard(List<Long> teamIds) {
+		if (teamIds != null && teamIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		String jpql = "select new study.datajpa.stats.TeamStats(t.id, count(m), sum(m.age), min(m.age), max(m.age))"
+			+ " from Member m join m.team t"
+			+ (teamIds == null ? "" : " where t.id in :teamIds")
+			+ " group by t.id";
+		return teamIds == null
+			? em.createQuery(jpql, TeamStats.class).getResultList()
+			: em.createQuery(jpql, TeamStats.class).setParameter("teamIds", teamIds).getResultList();
+	}
+}
@@ -0,0 +1,287 @@
+package study.datajpa.stats;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// >> 34. 팀 통계 증분 집계
+// 매번 Team.members를 로딩하거나 GROUP BY를 돌리는 대신 팀별 집계를 메모리에 들고 있는다.
+// - 멤버 insert/delete/팀 이동은 트랜잭션마다 팀별 증감으로 모아 두었다가 커밋 이후에 반영 (롤백된 변경은 반영하지 않음)
+// - 삭제로 min/max를 알 수 없게 되거나 벌크 수정이 있으면 dirty로 표시해두고 TeamStatsReconciler가 배치로 다시 맞춘다.
+@Component
+public class TeamStatsStore {
+
+	private final Map<Long, Aggregate> aggregates = new ConcurrentHashMap<>();
+	private final Set<Long> dirtyTeams = ConcurrentHashMap.newKeySet();
+
+	// 모든 변경에 붙는 순번. 재집계 쿼리 이후에 들어온 변경을 덮어쓰지 않기 위해 사용한다.
+	private final AtomicLong sequence = new AtomicLong();
+	// 처음에는 아무것도 모르므로 전체 재집계가 필요한 상태로 시작
+	private volatile long allDirtySequence = 0;
+	private volatile boolean allDirty = true;
+
+	public Optional<TeamStats> get(Long teamId) {
+		if (allDirty || dirtyTeams.contains(teamId)) {
+			return Optional.empty();
+		}
+		Aggregate aggregate = aggregates.get(teamId);
+		return Optional.of(aggregate == null ? TeamStats.empty(teamId) : aggregate.snapshot(teamId));
+	}
+
+	// dirty 여도 한 번이라도 재집계된 적이 있으면 그 값 (재집계 중에 보여줄 이전 값)
+	public Optional<TeamStats> lastKnown(Long teamId) {
+		Aggregate aggregate = aggregates.get(teamId);
+		return aggregate != null && aggregate.isKnown() ? Optional.of(aggregate.snapshot(teamId)) : Optional.empty();
+	}
+
+	public void memberAdded(Long teamId, int age) {
+		if (teamId != null) {
+			change(teamId, delta -> delta.add(age));
+		}
+	}
+
+	public void memberRemoved(Long teamId, int age) {
+		if (teamId != null) {
+			change(teamId, delta -> delta.remove(age));
+		}
+	}
+
+	// 커밋 전에 돌아간 재집계가 dirty 표시를 지워버리지 않도록 커밋 이후에도 한 번 더 표시한다.
+	public void markDirty(Long teamId) {
+		dirtyTeams.add(teamId);
+		change(teamId, delta -> delta.dirty = true);
+	}
+
+	// 벌크 수정처럼 어느 팀이 바뀌었는지 모를 때 (마찬가지로 커밋 이후에 한 번 더)
+	public void markAllDirty() {
+		markAllDirtyNow();
+		PendingChanges pending = pendingChanges();
+		if (pending != null) {
+			pending.allDirty = true;
+		}
+	}
+
+	private void markAllDirtyNow() {
+		allDirtySequence = sequence.incrementAndGet();
+		allDirty = true;
+	}
+
+	public boolean isAllDirty() {
+		return allDirty;
+	}
+
+	public List<Long> dirtyTeams() {
+		return new ArrayList<>(dirtyTeams);
+	}
+
+	// 재집계 쿼리를 날리기 직전에 받아둔다.
+	public long currentSequence() {
+		return sequence.get();
+	}
+
+	// 재집계 결과 반영. 쿼리 이후에 변경이 들어왔거나 아직 커밋 중인 변경이 있는 팀은
+	// dirty로 남겨두고 다음 배치에서 다시 맞춘다.
+	public void reconciled(Long teamId, TeamStats stats, long sequenceAtQuery) {
+		if (aggregate(teamId).replace(stats, sequenceAtQuery)) {
+			dirtyTeams.remove(teamId);
+		} else {
+			dirtyTeams.add(teamId);
+		}
+	}
+
+	public void reconciledAll(Collection<TeamStats> all, long sequenceAtQuery) {
+		Set<Long> present = new HashSet<>();
+		for (TeamStats stats : all) {
+			reconciled(stats.getTeamId(), stats, sequenceAtQuery);
+			present.add(stats.getTeamId());
+		}
+		// 결과에 없는 팀은 멤버가 0명
+		aggregates.forEach((teamId, aggregate) -> {
+			if (!present.contains(teamId)) {
+				reconciled(teamId, TeamStats.empty(teamId), sequenceAtQuery);
+			}
+		});
+		if (allDirtySequence <= sequenceAtQuery) {
+			allDirty = false;
+		}
+	}
+
+	private Aggregate aggregate(Long teamId) {
+		return aggregates.computeIfAbsent(teamId, id -> new Aggregate());
+	}
+
+	// 트랜잭션 안이면 그 트랜잭션의 팀별 증감에 더하고, 밖이면 바로 반영한다.
+	private void change(Long teamId, Consumer<TeamDelta> change) {
+		PendingChanges pending = pendingChanges();
+		if (pending != null) {
+			change.accept(pending.delta(teamId));
+			return;
+		}
+		TeamDelta delta = new TeamDelta();
+		change.accept(delta);
+		apply(teamId, delta);
+	}
+
+	private void apply(Long teamId, TeamDelta delta) {
+		if (!aggregate(teamId).apply(delta, sequence.incrementAndGet()) || delta.dirty) {
+			dirtyTeams.add(teamId);
+		}
+	}
+
+	// 트랜잭션마다 하나만 등록한다. (변경 건마다 synchronization 을 등록하면
+	// 수백만 건을 넣는 긴 작업에서 커밋 때까지 그만큼의 객체가 쌓인다)
+	private PendingChanges pendingChanges() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			pending = new PendingChanges();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(pending);
+		}
+		return pending;
+	}
+
+	// 한 트랜잭션의 팀별 증감 (팀 수만큼만 커진다)
+	// 팀을 처음 건드릴 때부터 트랜잭션이 끝날 때까지 그 팀을 "커밋 중"으로 표시한다.
+	// DB 커밋과 afterCommit 사이에 재집계가 돌면 GROUP BY 는 이미 새 행을 보는데 증분은 아직 안 들어간 상태라
+	// 그대로 덮어쓰면 afterCommit 에서 한 번 더 더해진다. 커밋 중인 팀은 재집계 결과로 덮어쓰지 않는다.
+	// (변경감지/지연 insert 는 커밋 시점 flush 에서 리스너가 불리므로 beforeCommit 이 아니라 변경을 받을 때 표시한다)
+	private class PendingChanges implements TransactionSynchronization {
+
+		private final Map<Long, TeamDelta> deltas = new HashMap<>();
+		private boolean allDirty;
+
+		TeamDelta delta(Long teamId) {
+			return deltas.computeIfAbsent(teamId, id -> {
+				aggregate(id).enter();
+				return new TeamDelta();
+			});
+		}
+
+		@Override
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(TeamStatsStore.this);
+		}
+
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(TeamStatsStore.this, this);
+		}
+
+		@Override
+		public void afterCommit() {
+			deltas.forEach(TeamStatsStore.this::apply);
+			if (allDirty) {
+				markAllDirtyNow();
+			}
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(TeamStatsStore.this);
+			deltas.keySet().forEach(teamId -> aggregate(teamId).leave());
+		}
+	}
+
+	private static class TeamDelta {
+
+		private long added;
+		private long addedSum;
+		private int addedMin = Integer.MAX_VALUE;
+		private int addedMax = Integer.MIN_VALUE;
+		private long removed;
+		private long removedSum;
+		private int removedMin = Integer.MAX_VALUE;
+		private int removedMax = Integer.MIN_VALUE;
+		private boolean dirty;
+
+		void add(int age) {
+			added++;
+			addedSum += age;
+			addedMin = Math.min(addedMin, age);
+			addedMax = Math.max(addedMax, age);
+		}
+
+		void remove(int age) {
+			removed++;
+			removedSum += age;
+			removedMin = Math.min(removedMin, age);
+			removedMax = Math.max(removedMax, age);
+		}
+	}
+
+	private static class Aggregate {
+
+		private long count;
+		private long sum;
+		private int min = Integer.MAX_VALUE;
+		private int max = Integer.MIN_VALUE;
+		private long lastChange;
+		private int inFlight;
+		private boolean known;
+
+		synchronized void enter() {
+			inFlight++;
+		}
+
+		synchronized void leave() {
+			inFlight--;
+		}
+
+		// 빠지는 나이를 기존 min/max 와 먼저 비교하고 더해지는 나이를 반영한다.
+		// 기존 min/max 값이 빠질 수 있으면 나머지 중 최솟값/최댓값을 알 수 없으므로 false (재집계 필요)
+		synchronized boolean apply(TeamDelta delta, long change) {
+			lastChange = change;
+			boolean exact = delta.removed == 0 || (delta.removedMin > min && delta.removedMax < max);
+			count += delta.added - delta.removed;
+			sum += delta.addedSum - delta.removedSum;
+			if (count <= 0) {
+				count = 0;
+				sum = 0;
+				min = Integer.MAX_VALUE;
+				max = Integer.MIN_VALUE;
+				return true;
+			}
+			min = Math.min(min, delta.addedMin);
+			max = Math.max(max, delta.addedMax);
+			return exact;
+		}
+
+		synchronized boolean replace(TeamStats stats, long sequenceAtQuery) {
+			if (inFlight > 0 || lastChange > sequenceAtQuery) {
+				return false;
+			}
+			count = stats.getMemberCount();
+			sum = stats.getAgeSum();
+			min = stats.getMinAge() == null ? Integer.MAX_VALUE : stats.getMinAge();
+			max = stats.getMaxAge() == null ? Integer.MIN_VALUE : stats.getMaxAge();
+			known = true;
+			return true;
+		}
+
+		synchronized boolean isKnown() {
+			return known;
+		}
+
+		synchronized TeamStats snapshot(Long teamId) {
+			if (count == 0) {
+				return TeamStats.empty(teamId);
+			}
+			return new TeamStats(teamId, count, sum, min, max);
+		}
+	}
+}
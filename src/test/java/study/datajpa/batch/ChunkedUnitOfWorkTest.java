@@ -0,0 +1,97 @@
+package study.datajpa.batch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ChunkedUnitOfWorkTest {
+
+	@Autowired
+	ChunkedUnitOfWorkFactory unitOfWorkFactory;
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	// >> 36-2. 청크마다 flush + clear 되어 영속성 컨텍스트가 chunkSize 이상으로 커지지 않는다.
+	@Test
+	public void chunkedPersist() {
+		transactionTemplate.executeWithoutResult(status -> {
+			ChunkedUnitOfWork unitOfWork = unitOfWorkFactory.begin(10);
+			Team team = unitOfWork.persist(new Team("chunkTeam"));
+			Long teamId = team.getId();
+
+			int maxManaged = 0;
+			for (int i = 0; i < 25; i++) {
+				// clear 이후에는 team 이 준영속이므로 reference 로 다시 얻는다.
+				unitOfWork.persist(new Member("chunk" + i, i, unitOfWork.reference(Team.class, teamId)));
+				maxManaged = Math.max(maxManaged, unitOfWork.stats().getManagedEntities());
+			}
+			unitOfWork.finish();
+
+			PersistenceContextStats stats = unitOfWork.stats();
+			assertThat(maxManaged).isLessThanOrEqualTo(10);
+			assertThat(stats.getTotalEntities()).isEqualTo(26);
+			assertThat(stats.getCheckpoints()).isEqualTo(3);
+			assertThat(stats.getManagedEntities()).isEqualTo(0);
+			status.setRollbackOnly();
+		});
+	}
+
+	@Test
+	public void flushByEstimatedBytes() {
+		transactionTemplate.executeWithoutResult(status -> {
+			ChunkedUnitOfWork unitOfWork = unitOfWorkFactory.begin(1_000, 1_000, entity -> 300);
+			for (int i = 0; i < 7; i++) {
+				unitOfWork.persist(new Member("chunkBytes" + i, i));
+			}
+			// 300 * 4 >= 1000 이므로 4개마다 비운다.
+			assertThat(unitOfWork.stats().getCheckpoints()).isEqualTo(1);
+			assertThat(unitOfWork.stats().getPendingEntities()).isEqualTo(3);
+			status.setRollbackOnly();
+		});
+	}
+
+	@Test
+	public void statelessPipeline() {
+		List<Member> sources = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			sources.add(new Member("stateless" + i, 10));
+		}
+		memberRepository.saveAll(sources);
+
+		long written = unitOfWorkFactory.stateless(
+			"select m from Member m where m.username like 'stateless%'", Member.class, 100, 2,
+			member -> new Member(member.getUsername() + "-copy", member.getAge() + 1));
+
+		assertThat(written).isEqualTo(5);
+		List<Member> copies = memberRepository.findByNames(List.of("stateless0-copy", "stateless4-copy"));
+		assertThat(copies).extracting("age").containsOnly(11);
+
+		memberRepository.deleteAll(sources);
+		memberRepository.deleteAll(memberRepository.findAll().stream()
+			.filter(member -> member.getUsername() != null && member.getUsername().endsWith("-copy"))
+			.collect(Collectors.toList()));
+	}
+
+	// 커밋 간격이 0 이하면 실행 도중이 아니라 만들 때 거절한다.
+	@Test
+	public void statelessPipelineRejectsNonPositiveCommitInterval() {
+		assertThatThrownBy(() -> unitOfWorkFactory.stateless(
+			"select m from Member m", Member.class, 100, 0, member -> member))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("commitInterval");
+	}
+}
@@ -0,0 +1,196 @@
+package study.datajpa.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 무효화가 커밋 시점에 일어나는지 보기 위해 클래스 전체를 @Transactional 로 묶지 않는다.
+@SpringBootTest
+class MemberLookupCacheTest {
+
+	@Autowired
+	MemberLookupCache memberLookupCache;
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	TeamRepository teamRepository;
+
+	@AfterEach
+	public void cleanUp() {
+		memberRepository.deleteAll(memberRepository.findByNames(Arrays.asList("cacheA", "cacheB", "cacheC")));
+		teamRepository.deleteAll(teamRepository.findAll().stream()
+			.filter(team -> team.getName().startsWith("cacheTeam"))
+			.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void cacheAside() {
+		Member member = memberRepository.save(new Member("cacheA", 1100));
+
+		long hits = memberLookupCache.stats().hitCount();
+		assertThat(memberLookupCache.findOneByUsername("cacheA")).get()
+			.extracting(MemberSnapshot::getId).isEqualTo(member.getId());
+		assertThat(memberLookupCache.findOneByUsername("cacheA")).isPresent();
+		assertThat(memberLookupCache.stats().hitCount()).isEqualTo(hits + 1);
+
+		// changeUsername -> 이전 이름, 새 이름 모두 무효화
+		assertThat(memberLookupCache.findByUsername("cacheB")).isEmpty();
+		transactionTemplate.executeWithoutResult(status ->
+			memberRepository.findById(member.getId()).get().changeUsername("cacheB"));
+		assertThat(memberLookupCache.findByUsername("cacheA")).isEmpty();
+		assertThat(memberLookupCache.findByUsername("cacheB")).hasSize(1);
+
+		// 벌크 수정 -> 전체 비움
+		transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(1100));
+		assertThat(memberLookupCache.findOneByUsername("cacheB").get().getAge()).isEqualTo(1101);
+
+		// save / delete
+		memberRepository.save(new Member("cacheB", 1200));
+		assertThat(memberLookupCache.findByUsername("cacheB")).hasSize(2);
+		memberRepository.deleteAll(memberRepository.findByUsername("cacheB"));
+		assertThat(memberLookupCache.findByUsername("cacheB")).isEmpty();
+	}
+
+	// JPQL 배치 삭제는 리스너를 거치지 않는다 -> 전체 비움
+	@Test
+	public void invalidateOnBatchDelete() {
+		Member member = memberRepository.save(new Member("cacheA", 1100));
+		memberRepository.save(new Member("cacheB", 1100));
+		assertThat(memberLookupCache.findByUsername("cacheA")).hasSize(1);
+		assertThat(memberLookupCache.findByUsername("cacheB")).hasSize(1);
+
+		memberRepository.deleteAllByIdInBatch(Arrays.asList(member.getId()));
+		assertThat(memberLookupCache.findByUsername("cacheA")).isEmpty();
+
+		memberRepository.deleteAllInBatch(memberRepository.findByUsername("cacheB"));
+		assertThat(memberLookupCache.findByUsername("cacheB")).isEmpty();
+	}
+
+	// 쓰기 트랜잭션 안의 조회는 캐시에 넣지 않는다 -> 커밋 전 데이터가 다른 스레드에 보이지 않는다
+	@Test
+	public void noCachingInsideWriteTransaction() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				memberRepository.save(new Member("cacheC", 1300));
+				assertThat(memberLookupCache.findByUsername("cacheC")).hasSize(1);
+				try {
+					assertThat(executor.submit(() -> memberLookupCache.findByUsername("cacheC")).get()).isEmpty();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				status.setRollbackOnly();
+			});
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(memberLookupCache.findByUsername("cacheC")).isEmpty();
+	}
+
+	// 트랜잭션 밖에서 부른 유저네임 finder 는 캐시에서, 트랜잭션 안에서는 DB 에서 (영속 엔티티)
+	@Test
+	public void repositoryFindersServedFromCache() {
+		Team team = teamRepository.save(new Team("cacheTeamA"));
+		Member member = memberRepository.save(new Member("cacheA", 1100, team));
+		assertThat(memberRepository.findListByUsername("cacheA")).hasSize(1);
+
+		long hits = memberLookupCache.stats().hitCount();
+		Member found = memberRepository.findMemberByUsername("cacheA");
+		assertThat(found.getId()).isEqualTo(member.getId());
+		assertThat(found.getAge()).isEqualTo(1100);
+		assertThat(found.getTeam().getId()).isEqualTo(team.getId());
+		assertThat(memberRepository.findOptionalByUsername("cacheA")).get().extracting(Member::getId).isEqualTo(member.getId());
+		assertThat(memberRepository.findByUsername("cacheA")).extracting(Member::getId).containsExactly(member.getId());
+		assertThat(memberRepository.findOptionalByUsername("cacheB")).isEmpty();	// 없는 이름도 캐시
+		assertThat(memberRepository.findMemberByUsername("cacheB")).isNull();
+		assertThat(memberLookupCache.stats().hitCount()).isEqualTo(hits + 4);
+
+		transactionTemplate.executeWithoutResult(status -> {
+			long before = memberLookupCache.stats().requestCount();
+			assertThat(memberRepository.findMemberByUsername("cacheA").getTeam().getName()).isEqualTo("cacheTeamA");
+			assertThat(memberLookupCache.stats().requestCount()).isEqualTo(before);
+		});
+
+		memberRepository.save(new Member("cacheA", 1200));
+		assertThatThrownBy(() -> memberRepository.findOptionalByUsername("cacheA"))
+			.isInstanceOf(IncorrectResultSizeDataAccessException.class);
+	}
+
+	// 스냅샷에 팀 이름이 들어 있으므로 팀 이름을 바꾸면 비운다.
+	@Test
+	public void invalidateOnTeamRename() {
+		Team team = teamRepository.save(new Team("cacheTeamA"));
+		memberRepository.save(new Member("cacheA", 1100, team));
+		assertThat(memberLookupCache.findOneByUsername("cacheA").get().getTeamName()).isEqualTo("cacheTeamA");
+
+		transactionTemplate.executeWithoutResult(status -> teamRepository.findById(team.getId()).get().setName("cacheTeamB"));
+		assertThat(memberLookupCache.findOneByUsername("cacheA").get().getTeamName()).isEqualTo("cacheTeamB");
+	}
+
+	// 한 트랜잭션에서 많이 바뀌어도 synchronization 은 하나. 임계치를 넘으면 커밋 후 전체를 비운다.
+	@Test
+	public void invalidationsCollectedPerTransaction() {
+		memberRepository.save(new Member("cacheA", 1100));
+		assertThat(memberLookupCache.findByUsername("cacheA")).hasSize(1);
+
+		transactionTemplate.executeWithoutResult(status -> {
+			int synchronizations = TransactionSynchronizationManager.getSynchronizations().size();
+			for (int i = 0; i < 5_000; i++) {
+				memberLookupCache.invalidate("cacheX" + i);
+			}
+			assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSizeLessThanOrEqualTo(synchronizations + 1);
+		});
+
+		long loads = memberLookupCache.stats().loadCount();
+		assertThat(memberLookupCache.findByUsername("cacheA")).hasSize(1);
+		assertThat(memberLookupCache.stats().loadCount()).isEqualTo(loads + 1);
+	}
+
+	// 같은 키에 동시에 miss 가 나도 DB 조회는 한 번
+	@Test
+	public void singleFlight() throws Exception {
+		memberRepository.save(new Member("cacheC", 1300));
+		memberLookupCache.invalidate("cacheC");
+		long loads = memberLookupCache.stats().loadCount();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<MemberSnapshot>>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				return memberLookupCache.findByUsername("cacheC");
+			}));
+		}
+		start.countDown();
+		for (Future<List<MemberSnapshot>> result : results) {
+			assertThat(result.get()).hasSize(1);
+		}
+		executor.shutdown();
+
+		assertThat(memberLookupCache.stats().loadCount()).isEqualTo(loads + 1);
+	}
+}
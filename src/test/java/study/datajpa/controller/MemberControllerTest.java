@@ -0,0 +1,77 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.cache.MemberLookupCache;
+import study.datajpa.repository.dto.MemberDto;
+import study.datajpa.stats.TeamStats;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 실제 HTTP 로 호출 (컨트롤러에는 트랜잭션이 없다 -> 쓰기 API 가 트랜잭션 없이도 동작하는지 확인)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MemberControllerTest {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	MemberLookupCache memberLookupCache;
+
+	@AfterEach
+	public void cleanUp() {
+		jdbcTemplate.update("delete from member where username like 'api%'");
+		jdbcTemplate.update("delete from team where name like 'apiTeam%'");
+		memberLookupCache.invalidateAll();
+	}
+
+	@Test
+	public void writeEndpoints() {
+		ResponseEntity<Long> team = restTemplate.postForEntity("/teams", Map.of("name", "apiTeam"), Long.class);
+		assertThat(team.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		Long teamId = team.getBody();
+
+		ResponseEntity<MemberDto> created = restTemplate.postForEntity("/members",
+			Map.of("username", "apiMember", "age", 5000, "teamId", teamId), MemberDto.class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(created.getBody().getTeamName()).isEqualTo("apiTeam");
+
+		ResponseEntity<Integer> bulk = restTemplate.postForEntity("/members/bulk-age-plus?age=5000", null, Integer.class);
+		assertThat(bulk.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(bulk.getBody()).isEqualTo(1);
+
+		MemberDto found = restTemplate.getForObject("/members/" + created.getBody().getId(), MemberDto.class);
+		assertThat(found.getUsername()).isEqualTo("apiMember");
+		assertThat(restTemplate.getForObject("/teams/" + teamId + "/stats", TeamStats.class).getMemberCount()).isEqualTo(1);
+	}
+
+	// GET /members?username= 는 캐시에서 꺼낸다
+	@Test
+	public void findByUsernameServedFromCache() {
+		Long teamId = restTemplate.postForObject("/teams", Map.of("name", "apiTeamCached"), Long.class);
+		restTemplate.postForEntity("/members", Map.of("username", "apiCached", "age", 1, "teamId", teamId), MemberDto.class);
+		restTemplate.getForObject("/members?username=apiCached", MemberDto[].class);
+		long hits = memberLookupCache.stats().hitCount();
+
+		MemberDto[] found = restTemplate.getForObject("/members?username=apiCached", MemberDto[].class);
+		assertThat(found).extracting(MemberDto::getUsername).containsExactly("apiCached");
+		assertThat(found).extracting(MemberDto::getTeamName).containsExactly("apiTeamCached");
+		assertThat(memberLookupCache.stats().hitCount()).isEqualTo(hits + 1);
+	}
+
+	@Test
+	public void notFound() {
+		assertThat(restTemplate.getForEntity("/members/-1", String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(restTemplate.postForEntity("/members", Map.of("username", "apiMember", "age", 1, "teamId", -1), String.class)
+			.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+}
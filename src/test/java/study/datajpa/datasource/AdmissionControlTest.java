@@ -0,0 +1,108 @@
+package study.datajpa.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class AdmissionControlTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	ConnectionPoolMetrics poolMetrics;
+	@Autowired
+	AdmissionControl admissionControl;
+
+	@Test
+	public void poolMetricsRecorded() {
+		long before = admissionControl.getAdmitted();
+		memberRepository.findUsernameList();
+
+		assertThat(admissionControl.getAdmitted()).isEqualTo(before + 1);
+
+		assertThat(poolMetrics.getAcquireTime().count()).isGreaterThan(0);
+		assertThat(poolMetrics.getTotalConnections()).isGreaterThan(0);
+	}
+
+	@Test
+	public void rejectAfterSlo() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setMaxConcurrent(1);
+		properties.setSloMillis(10);
+		AdmissionControl admissionControl = new AdmissionControl(properties, new ConnectionPoolMetrics());
+
+		admissionControl.acquire(false);	// 한 자리를 차지한 상태에서
+
+		assertThatThrownBy(() -> admissionControl.acquire(false))
+			.isInstanceOf(AdmissionRejectedException.class);
+		assertThat(admissionControl.getRejected()).isEqualTo(1);
+
+		admissionControl.release();
+		admissionControl.acquire(false);
+		assertThat(admissionControl.getAdmitted()).isEqualTo(2);
+	}
+
+	@Test
+	public void shedLowPriorityWhenPoolIsSlow() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setSloMillis(10);
+		ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+		AdmissionControl admissionControl = new AdmissionControl(properties, poolMetrics);
+
+		// 최근 커넥션 대기시간이 SLO를 넘도록 기록
+		poolMetrics.create("test", null).recordConnectionAcquiredNanos(TimeUnit.SECONDS.toNanos(10));
+
+		assertThatThrownBy(() -> admissionControl.acquire(true))
+			.isInstanceOf(AdmissionRejectedException.class);
+		assertThat(admissionControl.getShed()).isEqualTo(1);
+
+		// 일반 호출은 여전히 입장 가능
+		admissionControl.acquire(false);
+	}
+
+	// 커넥션을 새로 잡지 않아도 시간이 지나면 예전 스파이크가 잊혀져 다시 입장시킨다.
+	@Test
+	public void recentWaitDecaysWithoutSamples() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setSloMillis(10);
+		long[] now = {0};
+		ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics() {
+			@Override
+			long nanoTime() {
+				return now[0];
+			}
+		};
+		AdmissionControl admissionControl = new AdmissionControl(properties, poolMetrics);
+
+		poolMetrics.create("test", null).recordConnectionAcquiredNanos(TimeUnit.SECONDS.toNanos(10));
+		assertThatThrownBy(() -> admissionControl.acquire(true))
+			.isInstanceOf(AdmissionRejectedException.class);
+
+		now[0] += ConnectionPoolMetrics.RECENT_WAIT_HALF_LIFE_NANOS;
+		assertThat(poolMetrics.getRecentWaitMillis()).isEqualTo(625);
+
+		now[0] += 10 * ConnectionPoolMetrics.RECENT_WAIT_HALF_LIFE_NANOS;
+		admissionControl.acquire(true);
+		assertThat(admissionControl.getShed()).isEqualTo(1);
+	}
+
+	@Test
+	public void histogramPercentile() {
+		WaitTimeHistogram histogram = new WaitTimeHistogram();
+		for (int i = 0; i < 99; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(150));
+
+		assertThat(histogram.count()).isEqualTo(100);
+		assertThat(histogram.percentileMillis(50)).isEqualTo(1);
+		assertThat(histogram.percentileMillis(100)).isEqualTo(200);
+	}
+}
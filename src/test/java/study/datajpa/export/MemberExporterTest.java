@@ -0,0 +1,154 @@
+package study.datajpa.export;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// export 는 별도 커넥션으로 읽기 때문에 데이터를 커밋해두고 끝나면 지운다.
+@SpringBootTest
+class MemberExporterTest {
+
+	@Autowired
+	MemberExporter memberExporter;
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TeamRepository teamRepository;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	public void cleanUp() {
+		memberRepository.deleteAll(memberRepository.findByNames(Arrays.asList("export1", "export,2", "export3", "export4")));
+		memberRepository.deleteAllInBatch(memberRepository.findByUsername("exportMany"));
+		teamRepository.deleteAll(teamRepository.findAll().stream()
+			.filter(team -> "exportTeam".equals(team.getName()))
+			.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void exportCsvAndResume() throws IOException {
+		Team team = teamRepository.save(new Team("exportTeam"));
+		memberRepository.save(new Member("export1", 10, team));
+		memberRepository.save(new Member("export,2", 20, team));
+		memberRepository.save(new Member("export3", 30));
+
+		ExportOptions options = ExportOptions.builder().partitions(4).parallelism(2).fetchSize(2).build();
+		ExportReport report = memberExporter.export(directory, options);
+
+		assertThat(report.getRows()).isEqualTo(memberRepository.count());
+		List<String> lines = readAll(directory, "csv");
+		// 앞의 member_id 는 떼고 비교
+		assertThat(lines).extracting(line -> line.substring(line.indexOf(',') + 1)).contains("export1,10,exportTeam", "\"export,2\",20,exportTeam", "export3,30,");
+
+		// 파티션 하나를 쓰다가 죽은 상태(완료 표시 없음)에서 다시 실행하면 그 파티션만 다시 쓴다.
+		Files.delete(directory.resolve("members-00000.csv"));
+		Files.write(directory.resolve("export.manifest"), Files.readAllLines(directory.resolve("export.manifest")).stream()
+			.filter(line -> !line.startsWith("completed"))
+			.collect(Collectors.toList()));
+		ExportReport resumed = memberExporter.export(directory, options);
+		assertThat(resumed.getExportedPartitions()).isEqualTo(1);
+		assertThat(resumed.getSkippedPartitions()).isEqualTo(report.getExportedPartitions() - 1);
+		assertThat(readAll(directory, "csv")).hasSameSizeAs(lines);
+
+		// 끝난 export 디렉토리에 다시 실행하면 건너뛰지 않고 새로 뽑는다.
+		memberRepository.save(new Member("export4", 40));
+		ExportReport again = memberExporter.export(directory, options);
+		assertThat(again.getSkippedPartitions()).isZero();
+		assertThat(again.getRows()).isEqualTo(memberRepository.count());
+		assertThat(readAll(directory, "csv")).extracting(line -> line.substring(line.indexOf(',') + 1)).contains("export4,40,");
+	}
+
+	// 한 파티션이 실패하면 나머지 파티션은 취소되고, export() 가 끝난 뒤에는 더 이상 쓰지 않는다.
+	@Test
+	public void failedPartitionStopsTheRest() throws Exception {
+		List<Member> members = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			members.add(new Member("exportMany", i));
+		}
+		memberRepository.saveAll(members);
+
+		// 중단된 export 를 이어서 하는 상황. 0번 파티션의 .part 자리에 디렉토리가 있어서 쓸 수 없다.
+		Long minId = memberRepository.findAll().stream().map(Member::getId).min(Long::compare).get();
+		Long maxId = memberRepository.findAll().stream().map(Member::getId).max(Long::compare).get();
+		Files.write(directory.resolve("export.manifest"), Arrays.asList(
+			"shards=1", "minId.0=" + minId, "maxId.0=" + maxId, "partitions=64", "format=CSV"));
+		Files.createDirectories(directory.resolve("members-00000.csv.part").resolve("blocked"));
+
+		assertThatThrownBy(() -> memberExporter.export(directory, ExportOptions.builder().partitions(64).parallelism(1).build()))
+			.isInstanceOf(UncheckedIOException.class);
+
+		List<Path> written = partitionFiles(directory, "csv");
+		Thread.sleep(300);
+		assertThat(partitionFiles(directory, "csv")).hasSameSizeAs(written);
+		assertThat(written.size()).isLessThan(63);
+	}
+
+	@Test
+	public void exportBinary() throws IOException {
+		memberRepository.save(new Member("export1", 10));
+
+		ExportReport report = memberExporter.export(directory,
+			ExportOptions.builder().format(ExportFormat.BINARY).partitions(3).resume(false).build());
+
+		long rows = 0;
+		long bytes = 0;
+		for (Path file : partitionFiles(directory, "bin")) {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+			bytes += buffer.remaining();
+			while (buffer.hasRemaining()) {
+				buffer.getLong();
+				buffer.getInt();
+				skip(buffer);
+				skip(buffer);
+				rows++;
+			}
+		}
+		assertThat(rows).isEqualTo(report.getRows());
+		assertThat(bytes).isEqualTo(report.getBytes());
+	}
+
+	private static void skip(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length > 0) {
+			buffer.position(buffer.position() + length);
+		}
+	}
+
+	private static List<String> readAll(Path directory, String extension) throws IOException {
+		List<String> lines = new ArrayList<>();
+		for (Path file : partitionFiles(directory, extension)) {
+			lines.addAll(Files.readAllLines(file));
+		}
+		return lines;
+	}
+
+	private static List<Path> partitionFiles(Path directory, String extension) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "members-*." + extension)) {
+			stream.forEach(files::add);
+		}
+		return files;
+	}
+}
@@ -0,0 +1,107 @@
+package study.datajpa.id;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// save 는 각자 트랜잭션으로 커밋되므로 끝나면 직접 지운다.
+@SpringBootTest
+class BlockSequenceGeneratorTest {
+
+	static final int THREADS = 8;
+	static final int SAVES_PER_THREAD = 200;
+
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	IdProperties idProperties;
+	@Autowired
+	DataSource dataSource;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	public void cleanUp() {
+		jdbcTemplate.update("delete from member where username like 'idBlock%'");
+	}
+
+	// 여러 스레드가 동시에 save -> ID 는 모두 다르고, 시퀀스 호출은 블록 수만큼만 일어난다.
+	@Test
+	public void concurrentSave() throws Exception {
+		long sequenceBefore = currentSequenceValue();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<Long>>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			futures.add(executor.submit(() -> {
+				start.await();
+				List<Long> ids = new ArrayList<>();
+				for (int i = 0; i < SAVES_PER_THREAD; i++) {
+					ids.add(memberRepository.save(new Member("idBlock" + thread + "_" + i, 42)).getId());
+				}
+				return ids;
+			}));
+		}
+		long startNanos = System.nanoTime();
+		start.countDown();
+		Set<Long> ids = new HashSet<>();
+		for (Future<List<Long>> future : futures) {
+			ids.addAll(future.get());
+		}
+		long elapsedNanos = System.nanoTime() - startNanos;
+		executor.shutdown();
+
+		int saves = THREADS * SAVES_PER_THREAD;
+		long sequenceCalls = (currentSequenceValue() - sequenceBefore) / idProperties.getBlockSize();
+		System.out.println("saves = " + saves + ", saves/s = " + (saves * 1_000_000_000L / elapsedNanos)
+			+ ", sequence calls = " + sequenceCalls);
+
+		assertThat(ids).hasSize(saves);
+		assertThat(jdbcTemplate.queryForObject("select count(*) from member where username like 'idBlock%'", Long.class))
+			.isEqualTo(saves);
+		assertThat(sequenceCalls).isLessThanOrEqualTo(saves / idProperties.getBlockSize() + 1);
+	}
+
+	// JDBC 벌크 작업이 받은 블록과 JPA 가 받은 블록은 겹치지 않는다.
+	@Test
+	public void jdbcAllocatorSharesSequence() throws Exception {
+		Set<Long> ids = new HashSet<>();
+		ids.add(memberRepository.save(new Member("idBlockJpa1", 1)).getId());
+
+		long[] jdbcIds = new long[idProperties.getBlockSize() * 2 + 7];
+		try (Connection connection = dataSource.getConnection()) {
+			new SequenceBlockAllocator("member_seq", idProperties.getBlockSize()).fill(connection, jdbcIds, jdbcIds.length);
+		}
+		for (long id : jdbcIds) {
+			assertThat(ids.add(id)).isTrue();
+		}
+
+		for (int i = 0; i < idProperties.getBlockSize() + 1; i++) {
+			assertThat(ids.add(memberRepository.save(new Member("idBlockJpa2", 1)).getId())).isTrue();
+		}
+	}
+
+	private long currentSequenceValue() {
+		return jdbcTemplate.queryForObject(
+			"select current_value from information_schema.sequences where sequence_name = 'MEMBER_SEQ'", Long.class);
+	}
+}
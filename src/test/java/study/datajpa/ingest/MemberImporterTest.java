@@ -0,0 +1,170 @@
+package study.datajpa.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.TeamRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// import 는 자체 커넥션으로 커밋하므로 끝나면 직접 지운다.
+@SpringBootTest
+class MemberImporterTest {
+
+	@Autowired
+	MemberImporter memberImporter;
+	@Autowired
+	TeamRepository teamRepository;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	public void cleanUp() {
+		jdbcTemplate.update("delete from member where username like 'import%'");
+		jdbcTemplate.update("delete from team where name like 'importTeam%'");
+	}
+
+	@Test
+	public void importCsv() throws IOException {
+		Team existing = teamRepository.save(new Team("importTeamA"));
+		Path file = directory.resolve("members.csv");
+		Files.write(file, List.of(
+			"username,age,team_name",
+			"import1,10,importTeamA",
+			"\"import,2\",20,importTeamB",
+			"import3,abc,importTeamA",		// 나이 오류
+			",30,importTeamA",				// 유저네임 없음
+			"import4,40,",
+			"import5,50,importTeamB",
+			"\"import6,60,importTeamA"		// 따옴표 안 닫힘
+		), StandardCharsets.UTF_8);
+
+		ImportReport report = memberImporter.importFile(file,
+			ImportOptions.builder().header(true).batchSize(2).queueCapacity(1).build());
+
+		assertThat(report.getImported()).isEqualTo(4);
+		assertThat(report.getRejected()).isEqualTo(3);
+		assertThat(report.getTeamsCreated()).isEqualTo(1);
+
+		assertThat(teamName("import1")).isEqualTo("importTeamA");
+		assertThat(teamId("import1")).isEqualTo(existing.getId());
+		assertThat(teamName("import,2")).isEqualTo("importTeamB");
+		assertThat(teamId("import5")).isEqualTo(teamId("import,2"));
+		assertThat(teamId("import4")).isNull();
+
+		List<String> rejects = Files.readAllLines(directory.resolve("members.csv.rejects"));
+		assertThat(rejects).hasSize(3);
+		assertThat(rejects.get(0)).startsWith("4\tinvalid age\t");
+	}
+
+	@Test
+	public void importNdjson() throws IOException {
+		Path file = directory.resolve("members.ndjson");
+		Files.write(file, List.of(
+			"{\"username\":\"import7\",\"age\":70,\"teamName\":\"importTeamC\"}",
+			"{ \"age\": 80, \"extra\": true, \"username\": \"import\\u00e98\", \"teamName\": null }",
+			"{\"username\":\"import9\"}",
+			"not json"
+		), StandardCharsets.UTF_8);
+
+		ImportReport report = memberImporter.importFile(file,
+			ImportOptions.builder().format(ImportFormat.NDJSON).build());
+
+		assertThat(report.getImported()).isEqualTo(2);
+		assertThat(report.getRejected()).isEqualTo(2);
+		assertThat(teamName("import7")).isEqualTo("importTeamC");
+		assertThat(jdbcTemplate.queryForObject("select age from member where username = ?", Integer.class, "importé8"))
+			.isEqualTo(80);
+	}
+
+	@Test
+	public void throughput() throws IOException {
+		Path file = directory.resolve("bulk.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < 100_000; i++) {
+				writer.write("importBulk" + i + "," + (i % 90) + ",importTeam" + (i % 50));
+				writer.newLine();
+			}
+		}
+
+		ImportReport report = memberImporter.importFile(file, ImportOptions.builder().build());
+
+		System.out.println("report = " + report + ", rows/s = " + report.getRowsPerSecond());
+		assertThat(report.getImported()).isEqualTo(100_000);
+		assertThat(report.getTeamsCreated()).isEqualTo(50);
+	}
+
+	// 팀 하나를 만들 수 없으면(이름이 컬럼보다 김) 그 팀을 쓰는 행만 reject 되고 나머지는 들어간다.
+	@Test
+	public void teamCreateFailureRejectsOnlyItsRows() throws IOException {
+		Path file = directory.resolve("broken.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("importBroken0,10,importTeam" + "x".repeat(300));
+			writer.newLine();
+			for (int i = 1; i < 10_000; i++) {
+				writer.write("importBroken" + i + ",10,importTeamBroken" + (i % 2));
+				writer.newLine();
+			}
+			writer.write("importBroken10000,10,importTeam" + "x".repeat(300));
+			writer.newLine();
+		}
+
+		ImportReport report = memberImporter.importFile(file,
+			ImportOptions.builder().batchSize(10).queueCapacity(1).build());
+
+		assertThat(report.getImported()).isEqualTo(9_999);
+		assertThat(report.getRejected()).isEqualTo(2);
+		assertThat(report.getTeamsCreated()).isEqualTo(2);
+		assertThat(teamName("importBroken1")).isEqualTo("importTeamBroken1");
+
+		List<String> rejects = Files.readAllLines(directory.resolve("broken.csv.rejects"));
+		assertThat(rejects).hasSize(2);
+		assertThat(rejects.get(0)).startsWith("1\tcould not create team: ");
+		assertThat(rejects.get(1)).startsWith("10001\tcould not create team: ");
+	}
+
+	// resolve 스테이지가 실패하면 파싱 스테이지는 "aborted" 로 빠져나오지만, 던져지는 예외는 실제 원인이어야 한다.
+	// (reject 파일의 디렉터리가 없어서 팀 행을 reject 하는 순간 실패)
+	@Test
+	public void stageFailureSurfacesCause() throws IOException {
+		Path file = directory.resolve("broken.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("importBroken0,10,importTeam" + "x".repeat(300));
+			writer.newLine();
+			for (int i = 1; i < 10_000; i++) {
+				writer.write("importBroken" + i + ",10,importTeamBroken");
+				writer.newLine();
+			}
+		}
+
+		assertThatThrownBy(() -> memberImporter.importFile(file, ImportOptions.builder()
+			.batchSize(10).queueCapacity(1).rejectFile(directory.resolve("missing").resolve("broken.rejects")).build()))
+			.hasRootCauseInstanceOf(NoSuchFileException.class)
+			.hasMessageNotContaining("aborted");
+	}
+
+	private String teamName(String username) {
+		return jdbcTemplate.queryForObject(
+			"select t.name from member m join team t on m.team_id = t.team_id where m.username = ?", String.class, username);
+	}
+
+	private Long teamId(String username) {
+		return jdbcTemplate.queryForObject("select team_id from member where username = ?", Long.class, username);
+	}
+}
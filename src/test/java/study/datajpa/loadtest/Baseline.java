@@ -0,0 +1,75 @@
+package study.datajpa.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+// 기준 성능 (src/test/resources/loadtest/baseline.properties)
+// <시나리오>.<지표> = 값. 기준에 없는 시나리오/지표는 비교하지 않는다.
+// 같은 장비(또는 같은 CI 러너)에서 잰 값끼리만 비교해야 의미가 있다.
+class Baseline {
+
+	private final Properties values;
+
+	private Baseline(Properties values) {
+		this.values = values;
+	}
+
+	static Baseline load(Path file) throws IOException {
+		Properties values = new Properties();
+		if (Files.exists(file)) {
+			try (Reader reader = Files.newBufferedReader(file)) {
+				values.load(reader);
+			}
+		}
+		return new Baseline(values);
+	}
+
+	// 처리량은 tolerance 비율 이상 떨어지면, 응답시간은 tolerance 비율 이상 그리고 slackMillis 이상 늘어나면 회귀
+	// (1~2ms 짜리 응답시간은 비율만 보면 잡음에도 걸리므로 절대값 여유를 같이 둔다)
+	List<String> regressions(LoadResult result, double tolerance, double slackMillis) {
+		List<String> regressions = new ArrayList<>();
+		for (Map.Entry<String, Double> metric : result.metrics().entrySet()) {
+			String key = result.scenario + "." + metric.getKey();
+			String base = values.getProperty(key);
+			if (base == null) {
+				continue;
+			}
+			double expected = Double.parseDouble(base);
+			double actual = metric.getValue();
+			boolean regressed;
+			if (metric.getKey().equals("throughput")) {
+				regressed = actual < expected * (1 - tolerance);
+			} else if (metric.getKey().equals("errorRate")) {
+				regressed = actual > expected + 0.01;
+			} else {
+				regressed = actual > expected * (1 + tolerance) && actual - expected > slackMillis;
+			}
+			if (regressed) {
+				regressions.add(String.format("%s: %.2f (baseline %.2f)", key, actual, expected));
+			}
+		}
+		return regressions;
+	}
+
+	static void write(Path file, List<LoadResult> results, String comment) throws IOException {
+		Map<String, String> sorted = new TreeMap<>();
+		for (LoadResult result : results) {
+			result.metrics().forEach((metric, value) -> sorted.put(result.scenario + "." + metric, String.format("%.2f", value)));
+		}
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		try (Writer writer = Files.newBufferedWriter(file)) {
+			writer.write("# " + comment + "\n");
+			for (Map.Entry<String, String> entry : sorted.entrySet()) {
+				writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+			}
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package study.datajpa.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// 응답시간 히스토그램 (마이크로초, log-linear 버킷)
+// 2의 거듭제곱 구간마다 16칸으로 나누므로 상대오차 6.25% 이내. 커넥션 대기 히스토그램(>> 32-1)보다 촘촘해야
+// 몇 ms 단위의 회귀를 잡을 수 있다.
+class LatencyHistogram {
+
+	private static final int LINEAR = 32;
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BITS = 4;
+	private static final int BUCKETS = LINEAR + (64 - 5) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+	void recordNanos(long nanos) {
+		long micros = Math.max(0, nanos / 1_000);
+		counts.incrementAndGet(index(micros));
+		count.increment();
+		totalMicros.add(micros);
+		maxMicros.accumulate(micros);
+	}
+
+	long count() {
+		return count.sum();
+	}
+
+	double meanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : totalMicros.sum() / (double) n / 1_000;
+	}
+
+	double maxMillis() {
+		return maxMicros.get() / 1_000.0;
+	}
+
+	// 해당 버킷의 상한값 (보수적으로 크게 잡는다)
+	double percentileMillis(double percentile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), maxMicros.get()) / 1_000.0;
+			}
+		}
+		return maxMillis();
+	}
+
+	static int index(long micros) {
+		if (micros < LINEAR) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+		return LINEAR + (exponent - 5) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int exponent = (index - LINEAR) / SUB_BUCKETS + 5;
+		int sub = (index - LINEAR) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+}
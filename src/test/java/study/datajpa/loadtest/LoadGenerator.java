@@ -0,0 +1,131 @@
+package study.datajpa.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// 부하 발생기
+// - closed loop : 가상 사용자 N 명이 각자 요청 -> 응답 -> 다음 요청. 서버가 느려지면 요청 수도 줄어든다. (처리량 측정)
+// - open loop   : 응답과 상관없이 초당 R 건을 정해진 시각에 보낸다. 응답시간은 "보냈어야 할 시각"부터 재므로
+//                 서버가 밀려서 늦게 보낸 만큼도 응답시간에 들어간다. (coordinated omission 보정, 지연 측정)
+// 워밍업 구간의 요청은 결과에 넣지 않는다.
+class LoadGenerator {
+
+	// open loop 에서 응답을 기다리는 요청이 이보다 많으면 보내지 않고 오류로 센다. (발생기 쪽 메모리 보호)
+	private static final int MAX_IN_FLIGHT = 2_000;
+
+	private final HttpClient client;
+	private final Duration warmup;
+	private final Duration duration;
+
+	LoadGenerator(HttpClient client, Duration warmup, Duration duration) {
+		this.client = client;
+		this.warmup = warmup;
+		this.duration = duration;
+	}
+
+	LoadResult closedLoop(String scenario, int users, Supplier<HttpRequest> requests) throws Exception {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder completed = new LongAdder();
+		LongAdder errors = new LongAdder();
+		long measureFrom = System.nanoTime() + warmup.toNanos();
+		long deadline = measureFrom + duration.toNanos();
+
+		ExecutorService executor = Executors.newFixedThreadPool(users);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < users; i++) {
+				futures.add(executor.submit(() -> {
+					while (true) {
+						long start = System.nanoTime();
+						if (start >= deadline) {
+							return null;
+						}
+						boolean ok = send(requests.get());
+						long end = System.nanoTime();
+						if (start >= measureFrom) {
+							latency.recordNanos(end - start);
+							completed.increment();
+							if (!ok) {
+								errors.increment();
+							}
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return new LoadResult(scenario, completed.sum(), errors.sum(), duration, latency);
+	}
+
+	LoadResult openLoop(String scenario, double ratePerSecond, Supplier<HttpRequest> requests) throws Exception {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder completed = new LongAdder();
+		LongAdder errors = new LongAdder();
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+		long begin = System.nanoTime();
+		long measureFrom = begin + warmup.toNanos();
+		long deadline = measureFrom + duration.toNanos();
+
+		List<CompletableFuture<?>> pending = new ArrayList<>();
+		for (long intended = begin; intended < deadline; intended += intervalNanos) {
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			boolean measured = intended >= measureFrom;
+			if (!inFlight.tryAcquire()) {
+				if (measured) {
+					completed.increment();
+					errors.increment();
+				}
+				continue;
+			}
+			long intendedStart = intended;
+			CompletableFuture<?> future = client.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+				.handle((response, failure) -> {
+					inFlight.release();
+					if (measured) {
+						latency.recordNanos(System.nanoTime() - intendedStart);
+						completed.increment();
+						if (failure != null || response.statusCode() >= 400) {
+							errors.increment();
+						}
+					}
+					return null;
+				});
+			pending.add(future);
+			pending.removeIf(CompletableFuture::isDone);
+		}
+		CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+		return new LoadResult(scenario, completed.sum(), errors.sum(), duration, latency);
+	}
+
+	private boolean send(HttpRequest request) {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
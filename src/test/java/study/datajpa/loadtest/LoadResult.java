@@ -0,0 +1,49 @@
+package study.datajpa.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 시나리오 하나의 측정 결과 (워밍업 구간 제외)
+class LoadResult {
+
+	final String scenario;
+	final long requests;
+	final long errors;
+	final Duration elapsed;
+	final LatencyHistogram latency;
+
+	LoadResult(String scenario, long requests, long errors, Duration elapsed, LatencyHistogram latency) {
+		this.scenario = scenario;
+		this.requests = requests;
+		this.errors = errors;
+		this.elapsed = elapsed;
+		this.latency = latency;
+	}
+
+	double throughput() {
+		return elapsed.isZero() ? 0 : requests * 1_000_000_000.0 / elapsed.toNanos();
+	}
+
+	double errorRate() {
+		return requests == 0 ? 0 : (double) errors / requests;
+	}
+
+	// baseline.properties 와 같은 키
+	Map<String, Double> metrics() {
+		Map<String, Double> metrics = new LinkedHashMap<>();
+		metrics.put("throughput", throughput());
+		metrics.put("p50Millis", latency.percentileMillis(50));
+		metrics.put("p95Millis", latency.percentileMillis(95));
+		metrics.put("p99Millis", latency.percentileMillis(99));
+		metrics.put("errorRate", errorRate());
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d requests (%d errors), %.0f req/s, mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+			scenario, requests, errors, throughput(), latency.meanMillis(), latency.percentileMillis(50),
+			latency.percentileMillis(95), latency.percentileMillis(99), latency.maxMillis());
+	}
+}
@@ -0,0 +1,186 @@
+package study.datajpa.loadtest;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// >> 43. 웹 + JPA 부하/회귀 테스트
+// 평소 test 에서는 빠지고 ./gradlew loadTest 로만 돈다.
+// 설정 (시스템 프로퍼티):
+//   loadtest.warmup-seconds(3) loadtest.duration-seconds(10) loadtest.users(8) loadtest.rate(200)
+//   loadtest.tolerance(0.3) loadtest.slack-millis(5)
+//   loadtest.baseline(src/test/resources/loadtest/baseline.properties)
+//   loadtest.update-baseline(false) : true 면 비교하지 않고 이번 결과로 기준을 다시 쓴다.
+// 결과는 build/loadtest/results.properties 에 남는다.
+@Tag("load")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class LoadTest {
+
+	static final int TEAMS = 10;
+	static final int MEMBERS = 2_000;
+
+	@LocalServerPort
+	int port;
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TeamRepository teamRepository;
+
+	HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	LoadGenerator generator;
+	Baseline baseline;
+	List<Long> teamIds;
+	List<Long> memberIds;
+	List<LoadResult> results = new ArrayList<>();
+
+	@BeforeAll
+	public void setUp() throws Exception {
+		generator = new LoadGenerator(client,
+			Duration.ofSeconds(setting("loadtest.warmup-seconds", 3)), Duration.ofSeconds(setting("loadtest.duration-seconds", 10)));
+		baseline = Baseline.load(baselineFile());
+
+		List<Team> teams = new ArrayList<>();
+		for (int i = 0; i < TEAMS; i++) {
+			teams.add(new Team("loadTeam" + i));
+		}
+		teamIds = teamRepository.saveAll(teams).stream().map(Team::getId).collect(Collectors.toList());
+		List<Member> members = new ArrayList<>();
+		for (int i = 0; i < MEMBERS; i++) {
+			members.add(new Member("load" + i, i % 50, teams.get(i % TEAMS)));
+		}
+		memberIds = memberRepository.saveAll(members).stream().map(Member::getId).collect(Collectors.toList());
+	}
+
+	@Test
+	@Order(1)
+	public void memberById() throws Exception {
+		run(generator.closedLoop("memberById", users(), () -> get("/members/" + randomMemberId())));
+	}
+
+	@Test
+	@Order(2)
+	public void memberPage() throws Exception {
+		run(generator.closedLoop("memberPage", users(), () ->
+			get("/members/page?age=10&size=20&sort=username,desc&page=" + random().nextInt(5))));
+	}
+
+	// 읽기 70% (단건/이름/팀 통계) + 쓰기 30%
+	@Test
+	@Order(3)
+	public void mixedReadWrite() throws Exception {
+		run(generator.closedLoop("mixedReadWrite", users(), () -> {
+			int dice = random().nextInt(10);
+			if (dice < 4) {
+				return get("/members/" + randomMemberId());
+			} else if (dice < 6) {
+				return get("/members?username=load" + random().nextInt(MEMBERS));
+			} else if (dice < 7) {
+				return get("/teams/" + randomTeamId() + "/stats");
+			}
+			return post("/members", "{\"username\":\"loadNew" + random().nextInt(MEMBERS) + "\",\"age\":"
+				+ random().nextInt(50) + ",\"teamId\":" + randomTeamId() + "}");
+		}));
+	}
+
+	@Test
+	@Order(4)
+	public void memberByIdOpenLoop() throws Exception {
+		run(generator.openLoop("memberByIdOpenLoop", setting("loadtest.rate", 200), () -> get("/members/" + randomMemberId())));
+	}
+
+	@AfterAll
+	public void writeResults() throws Exception {
+		Baseline.write(Paths.get("build", "loadtest", "results.properties"), results, "load test results " + Instant.now());
+		if (Boolean.getBoolean("loadtest.update-baseline")) {
+			Baseline.write(baselineFile(), results, "baseline recorded " + Instant.now() + " with "
+				+ users() + " users, rate " + setting("loadtest.rate", 200) + "/s, " + setting("loadtest.duration-seconds", 10) + "s");
+		}
+	}
+
+	private void run(LoadResult result) {
+		results.add(result);
+		System.out.println("load test " + result);
+
+		assertThat(result.requests).as("requests").isPositive();
+		assertThat(result.errorRate()).as(result.scenario + " error rate").isLessThan(0.01);
+		if (!Boolean.getBoolean("loadtest.update-baseline")) {
+			assertThat(baseline.regressions(result, settingDouble("loadtest.tolerance", 0.3), settingDouble("loadtest.slack-millis", 5)))
+				.as("regressions against " + baselineFile())
+				.isEmpty();
+		}
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(uri(path)).GET().build();
+	}
+
+	private HttpRequest post(String path, String json) {
+		return HttpRequest.newBuilder(uri(path))
+			.header("Content-Type", "application/json")
+			.POST(HttpRequest.BodyPublishers.ofString(json))
+			.build();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+	private long randomMemberId() {
+		return memberIds.get(random().nextInt(memberIds.size()));
+	}
+
+	private long randomTeamId() {
+		return teamIds.get(random().nextInt(teamIds.size()));
+	}
+
+	private static ThreadLocalRandom random() {
+		return ThreadLocalRandom.current();
+	}
+
+	private static int users() {
+		return setting("loadtest.users", 8);
+	}
+
+	private static Path baselineFile() {
+		return Paths.get(System.getProperty("loadtest.baseline", "src/test/resources/loadtest/baseline.properties"));
+	}
+
+	private static int setting(String name, int defaultValue) {
+		return Integer.getInteger(name, defaultValue);
+	}
+
+	private static double settingDouble(String name, double defaultValue) {
+		String value = System.getProperty(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+}
@@ -0,0 +1,172 @@
+package study.datajpa.memo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 요청 하나를 직접 만들어 RequestContextHolder 에 걸고, 트랜잭션 밖에서 레포지토리를 부른다.
+@SpringBootTest
+class RequestQueryMemoTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TeamRepository teamRepository;
+	@Autowired
+	QueryMemoStats queryMemoStats;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	ServletRequestAttributes request;
+
+	@BeforeEach
+	public void startRequest() {
+		request = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(request);
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		RequestContextHolder.resetRequestAttributes();
+		memberRepository.deleteAll(memberRepository.findByNames(Arrays.asList("memoA", "memoB")));
+		teamRepository.findAll().stream()
+			.filter(team -> team.getName() != null && team.getName().startsWith("memoTeam"))
+			.forEach(teamRepository::delete);
+	}
+
+	@Test
+	public void sameQueryInOneRequest() {
+		memberRepository.save(new Member("memoA", 1300));
+		RequestQueryMemo memo = RequestQueryMemo.current();
+
+		Member first = memberRepository.findMemberByUsername("memoA");
+		Member second = memberRepository.findMemberByUsername("memoA");
+		assertThat(second).isSameAs(first);
+		assertThat(memo.getHits()).isEqualTo(1);
+
+		// 인자가 다르면 다른 키, 없는 결과(null)도 메모된다
+		assertThat(memberRepository.findMemberByUsername("memoB")).isNull();
+		assertThat(memberRepository.findMemberByUsername("memoB")).isNull();
+		assertThat(memo.getHits()).isEqualTo(2);
+	}
+
+	@Test
+	public void writesInvalidate() {
+		memberRepository.save(new Member("memoA", 1300));
+		RequestQueryMemo memo = RequestQueryMemo.current();
+
+		assertThat(memberRepository.findListByUsername("memoA")).hasSize(1);
+		memberRepository.save(new Member("memoA", 1301));
+		assertThat(memberRepository.findListByUsername("memoA")).hasSize(2);
+
+		// 벌크 수정
+		List<Member> before = memberRepository.findListByUsername("memoA");
+		assertThat(memo.getHits()).isEqualTo(1);
+		transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(1300));
+		assertThat(memberRepository.findListByUsername("memoA")).isNotSameAs(before)
+			.extracting(Member::getAge).containsOnly(1301, 1302);
+
+		// 변경감지(레포지토리 save 를 거치지 않음)는 엔티티 리스너가 무효화
+		Long id = before.get(0).getId();
+		assertThat(memberRepository.findListByUsername("memoB")).isEmpty();
+		transactionTemplate.executeWithoutResult(status ->
+			memberRepository.findById(id).get().changeUsername("memoB"));
+		assertThat(memberRepository.findListByUsername("memoB")).hasSize(1);
+
+		assertThat(memo.getHits()).isEqualTo(1);
+		assertThat(memo.getInvalidations()).isGreaterThanOrEqualTo(3);
+	}
+
+	@Test
+	public void associatedTypeInvalidates() {
+		Team team = teamRepository.save(new Team("memoTeam"));
+		assertThat(teamRepository.findById(team.getId())).isPresent();
+
+		// Member 쓰기는 Team 조회 결과도 지운다 (Team.members)
+		Member member = new Member("memoA", 1300, team);
+		memberRepository.save(member);
+		teamRepository.findById(team.getId());
+		assertThat(RequestQueryMemo.current().getHits()).isZero();
+
+		teamRepository.findById(team.getId());
+		assertThat(RequestQueryMemo.current().getHits()).isEqualTo(1);
+	}
+
+	// Team 변경감지 update 는 Team 조회 결과와, Team 을 연관으로 가진 Member 조회 결과를 모두 지운다.
+	@Test
+	public void teamRenameInvalidates() {
+		Team team = teamRepository.save(new Team("memoTeam"));
+		memberRepository.save(new Member("memoA", 1300, team));
+		RequestQueryMemo memo = RequestQueryMemo.current();
+
+		assertThat(teamRepository.findById(team.getId())).get().extracting(Team::getName).isEqualTo("memoTeam");
+		Member before = memberRepository.findMemberByUsername("memoA");
+		transactionTemplate.executeWithoutResult(status ->
+			teamRepository.findById(team.getId()).get().setName("memoTeamRenamed"));
+
+		assertThat(teamRepository.findById(team.getId())).get().extracting(Team::getName).isEqualTo("memoTeamRenamed");
+		assertThat(memberRepository.findMemberByUsername("memoA")).isNotSameAs(before);
+		assertThat(memo.getHits()).isZero();
+	}
+
+	// 상속받은 findById/count 는 두 레포지토리에서 같은 Method 지만 결과가 섞이면 안 된다 (member_seq/team_seq 는 ID 가 겹친다)
+	@Test
+	public void inheritedMethodKeyedByRepository() {
+		Long id = memberRepository.save(new Member("memoA", 1300)).getId();
+		teamRepository.save(new Team("memoTeam"));
+
+		assertThat(memberRepository.findById(id)).get().isInstanceOf(Member.class);
+		Optional<?> team = teamRepository.findById(id);
+		assertThat(team.map(Object::getClass)).isNotEqualTo(Optional.of(Member.class));
+
+		long memberCount = memberRepository.count();
+		// 쓰기 트랜잭션 안의 조회는 메모를 거치지 않는다 -> 실제 팀 수
+		Long teamCount = transactionTemplate.execute(status -> teamRepository.count());
+		assertThat(teamRepository.count()).isEqualTo(teamCount);
+		assertThat(memberRepository.count()).isEqualTo(memberCount);
+		assertThat(RequestQueryMemo.current().getHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void noMemoOutsideRequestOrInsideWriteTransaction() {
+		RequestContextHolder.resetRequestAttributes();
+		memberRepository.findMemberByUsername("memoA");
+		assertThat(RequestQueryMemo.current()).isNull();
+
+		RequestContextHolder.setRequestAttributes(request);
+		transactionTemplate.executeWithoutResult(status -> {
+			memberRepository.findMemberByUsername("memoA");
+			memberRepository.findMemberByUsername("memoA");
+		});
+		assertThat(RequestQueryMemo.current().getHits()).isZero();
+	}
+
+	@Test
+	public void statsRecordedWhenRequestCompletes() {
+		long requests = queryMemoStats.getRequests();
+		long hits = queryMemoStats.getHits();
+
+		memberRepository.findMemberByUsername("memoA");
+		memberRepository.findMemberByUsername("memoA");
+		request.requestCompleted();
+
+		assertThat(queryMemoStats.getRequests()).isEqualTo(requests + 1);
+		assertThat(queryMemoStats.getHits()).isEqualTo(hits + 1);
+	}
+}
@@ -0,0 +1,135 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.stats.TeamStats;
+import study.datajpa.stats.TeamStatsReconciler;
+import study.datajpa.stats.TeamStatsStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 팀 통계는 커밋 이후에 반영되기 때문에 클래스 전체를 @Transactional 로 묶지 않는다.
+@SpringBootTest
+class TeamRepositoryTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TeamRepository teamRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	TeamStatsStore teamStatsStore;
+	@Autowired
+	TeamStatsReconciler teamStatsReconciler;
+
+	// 커밋된 데이터가 다른 테스트(벌크 수정 등)에 섞이지 않도록 정리
+	@AfterEach
+	public void cleanUp() {
+		memberRepository.deleteAll(memberRepository.findByNames(Arrays.asList("stats1", "stats2", "stats3", "stats4")));
+		teamRepository.deleteAll(teamRepository.findAll().stream()
+			.filter(team -> team.getName().startsWith("statsTeam"))
+			.collect(Collectors.toList()));
+	}
+
+	// >> 34-2. 팀 통계 증분 갱신 테스트
+	@Test
+	public void teamStats() {
+		Team teamA = teamRepository.save(new Team("statsTeamA"));
+		Team teamB = teamRepository.save(new Team("statsTeamB"));
+		Member member1 = memberRepository.save(new Member("stats1", 1010, teamA));
+		memberRepository.save(new Member("stats2", 1020, teamA));
+		memberRepository.save(new Member("stats3", 1030, teamB));
+
+		TeamStats statsA = teamRepository.findTeamStats(teamA.getId());
+		assertThat(statsA.getMemberCount()).isEqualTo(2);
+		assertThat(statsA.getAgeSum()).isEqualTo(2030);
+		assertThat(statsA.getMinAge()).isEqualTo(1010);
+		assertThat(statsA.getMaxAge()).isEqualTo(1020);
+
+		// insert
+		memberRepository.save(new Member("stats4", 1040, teamB));
+		TeamStats statsB = teamRepository.findTeamStats(teamB.getId());
+		assertThat(statsB.getMemberCount()).isEqualTo(2);
+		assertThat(statsB.getMaxAge()).isEqualTo(1040);
+
+		// changeTeam: A -> B
+		transactionTemplate.executeWithoutResult(status -> {
+			Member member = memberRepository.findById(member1.getId()).get();
+			member.changeTeam(teamRepository.findById(teamB.getId()).get());
+		});
+		assertThat(teamRepository.findTeamStats(teamA.getId()).getMemberCount()).isEqualTo(1);
+		assertThat(teamRepository.findTeamStats(teamA.getId()).getMinAge()).isEqualTo(1020);
+		assertThat(teamRepository.findTeamStats(teamB.getId()).getMemberCount()).isEqualTo(3);
+		assertThat(teamRepository.findTeamStats(teamB.getId()).getMinAge()).isEqualTo(1010);
+
+		// 벌크 수정 후에는 재집계
+		transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(1030));
+		statsB = teamRepository.findTeamStats(teamB.getId());
+		assertThat(statsB.getAgeSum()).isEqualTo(1010 + 1031 + 1041);
+		assertThat(statsB.getMaxAge()).isEqualTo(1041);
+
+		// delete
+		memberRepository.delete(memberRepository.findById(member1.getId()).get());
+		statsB = teamRepository.findTeamStats(teamB.getId());
+		assertThat(statsB.getMemberCount()).isEqualTo(2);
+		assertThat(statsB.getMinAge()).isEqualTo(1031);
+	}
+
+	// 배치 삭제는 엔티티 리스너를 거치지 않는다 -> 전체 재집계
+	@Test
+	public void teamStatsAfterBatchDelete() {
+		Team team = teamRepository.save(new Team("statsTeamA"));
+		Member member1 = memberRepository.save(new Member("stats1", 1010, team));
+		Member member2 = memberRepository.save(new Member("stats2", 1020, team));
+		assertThat(teamRepository.findTeamStats(team.getId()).getMemberCount()).isEqualTo(2);
+
+		memberRepository.deleteAllByIdInBatch(Arrays.asList(member1.getId()));
+		assertThat(teamRepository.findTeamStats(team.getId()).getMemberCount()).isEqualTo(1);
+
+		memberRepository.deleteAllInBatch(Arrays.asList(member2));
+		assertThat(teamRepository.findTeamStats(team.getId()).getMemberCount()).isZero();
+	}
+
+	// 전체 재집계가 필요할 때 동시에 조회가 몰려도 GROUP BY 는 한 번만 돈다.
+	@Test
+	public void fullReconcileSingleFlight() throws Exception {
+		Team team = teamRepository.save(new Team("statsTeamA"));
+		memberRepository.save(new Member("stats1", 1010, team));
+		assertThat(teamRepository.findTeamStats(team.getId()).getMemberCount()).isEqualTo(1);
+
+		teamStatsStore.markAllDirty();
+		long before = teamStatsReconciler.getFullReconciles();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<TeamStats>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				return teamRepository.findTeamStats(team.getId());
+			}));
+		}
+		start.countDown();
+		for (Future<TeamStats> future : futures) {
+			assertThat(future.get().getMemberCount()).isEqualTo(1);
+		}
+		executor.shutdown();
+
+		assertThat(teamStatsReconciler.getFullReconciles() - before).isEqualTo(1);
+		assertThat(teamStatsStore.isAllDirty()).isFalse();
+	}
+}
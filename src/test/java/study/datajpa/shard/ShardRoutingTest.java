@@ -0,0 +1,261 @@
+package study.datajpa.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.export.ExportOptions;
+import study.datajpa.export.ExportReport;
+import study.datajpa.export.MemberExporter;
+import study.datajpa.ingest.ImportOptions;
+import study.datajpa.ingest.ImportReport;
+import study.datajpa.ingest.MemberImporter;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.stats.TeamStats;
+import study.datajpa.stats.TeamStatsReconciler;
+import study.datajpa.stats.TeamStatsStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 메모리 H2 세 개를 샤드로 쓰는 컨텍스트. 샤드마다 트랜잭션이 따로라서 클래스 전체를 @Transactional 로 묶지 않는다.
+@SpringBootTest(properties = {
+	"datajpa.shard.enabled=true",
+	"datajpa.shard.node-id=1",
+	"datajpa.shard.nodes[0].url=jdbc:h2:mem:jpashard0;DB_CLOSE_DELAY=-1",
+	"datajpa.shard.nodes[1].url=jdbc:h2:mem:jpashard1;DB_CLOSE_DELAY=-1",
+	"datajpa.shard.nodes[2].url=jdbc:h2:mem:jpashard2;DB_CLOSE_DELAY=-1",
+	"spring.jpa.open-in-view=false"
+})
+class ShardRoutingTest {
+
+	static final int SHARDS = 3;
+
+	@Autowired
+	Shards shards;
+	@Autowired
+	MemberRepository memberRepository;
+	@Autowired
+	TeamRepository teamRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	MemberImporter memberImporter;
+	@Autowired
+	MemberExporter memberExporter;
+	@Autowired
+	TeamStatsStore teamStatsStore;
+	@Autowired
+	TeamStatsReconciler teamStatsReconciler;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	public void cleanUp() {
+		for (int shard = 0; shard < SHARDS; shard++) {
+			shard(shard).update("delete from member");
+			shard(shard).update("delete from team");
+		}
+	}
+
+	@Test
+	public void routesByTeam() {
+		Team teamA = teamRepository.save(new Team("teamA"));
+		Team teamB = teamRepository.save(new Team("teamB"));
+		int shardA = ShardIdGenerator.shardOf(teamA.getId());
+		assertThat(shardA).isNotEqualTo(ShardIdGenerator.shardOf(teamB.getId()));
+
+		Member member1 = memberRepository.save(new Member("member1", 10, teamA));
+		Member member2 = memberRepository.save(new Member("member2", 20, teamA));
+		memberRepository.save(new Member("member3", 30, teamB));
+
+		// 팀의 멤버는 팀과 같은 샤드에만 있다
+		assertThat(ShardIdGenerator.shardOf(member1.getId())).isEqualTo(shardA);
+		assertThat(shard(shardA).queryForObject("select count(*) from member", Long.class)).isEqualTo(2);
+		assertThat(shard(shardA).queryForObject("select count(*) from team", Long.class)).isEqualTo(1);
+
+		assertThat(memberRepository.findById(member2.getId())).get().extracting(Member::getAge).isEqualTo(20);
+		assertThat(memberRepository.findEntityGraphByUsername("member3")).extracting(member -> member.getTeam().getName())
+			.containsExactly("teamB");
+		memberRepository.deleteById(member2.getId());
+		assertThat(memberRepository.findById(member2.getId())).isEmpty();
+	}
+
+	@Test
+	public void scatterGather() {
+		List<Team> teams = teamRepository.saveAll(List.of(new Team("teamA"), new Team("teamB"), new Team("teamC")));
+		for (int i = 0; i < 30; i++) {
+			memberRepository.save(new Member("member" + i, i % 2 == 0 ? 10 : 20, i % 4 == 3 ? null : teams.get(i % 3)));
+		}
+
+		assertThat(memberRepository.count()).isEqualTo(30);
+		assertThat(memberRepository.findUsernameList()).hasSize(30);
+		for (int shard = 0; shard < SHARDS; shard++) {
+			assertThat(shard(shard).queryForObject("select count(*) from member", Long.class)).isPositive();
+		}
+		assertThat(memberRepository.findAll()).extracting(Member::getUsername)
+			.containsExactlyInAnyOrderElementsOf(IntStream.range(0, 30).mapToObj(i -> "member" + i)
+				.collect(Collectors.toList()));
+
+		// 전체 30 명을 username 내림차순으로 4 명씩 (findPageByAge 의 @Query 는 나이 조건이 없다)
+		Page<Member> page = memberRepository.findPageByAge(10, PageRequest.of(1, 4, Sort.by(Sort.Direction.DESC, "username")));
+		assertThat(page.getContent()).extracting(Member::getUsername)
+			.containsExactlyElementsOf(usernames(IntStream.range(0, 30), 4));
+		assertThat(page.getTotalElements()).isEqualTo(30);
+		assertThat(page.getTotalPages()).isEqualTo(8);
+
+		// 나이 10 인 15 명 중 두 번째 4 명
+		Slice<Member> slice = memberRepository.findSliceByAge(10, PageRequest.of(1, 4, Sort.by(Sort.Direction.DESC, "username")));
+		assertThat(slice.getContent()).extracting(Member::getUsername)
+			.containsExactlyElementsOf(usernames(IntStream.range(0, 30).filter(i -> i % 2 == 0), 4));
+		assertThat(slice.hasNext()).isTrue();
+
+		assertThat(memberRepository.bulkAgePlus(20)).isEqualTo(15);
+		assertThat(memberRepository.findSliceByAge(21, PageRequest.of(0, 100)).getNumberOfElements()).isEqualTo(15);
+	}
+
+	@Test
+	public void transactionStaysOnOneShard() {
+		Team teamA = teamRepository.save(new Team("teamA"));
+		Team teamB = teamRepository.save(new Team("teamB"));
+		Member member = memberRepository.save(new Member("member1", 10, teamA));
+
+		// 트랜잭션 안에서 새로 만든 팀과 멤버는 그 트랜잭션의 샤드에
+		Team teamC = ShardContext.call(shards.shardOf(teamA.getId()), () -> transactionTemplate.execute(status -> {
+			Team team = teamRepository.save(new Team("teamC"));
+			memberRepository.save(new Member("member2", 20, team));
+			return team;
+		}));
+		assertThat(shards.shardOf(teamC.getId())).isEqualTo(shards.shardOf(teamA.getId()));
+
+		// 다른 샤드의 엔티티는 같은 트랜잭션에서 쓸 수 없다
+		assertThatThrownBy(() -> ShardContext.call(shards.shardOf(teamA.getId()), () ->
+			transactionTemplate.execute(status -> memberRepository.save(new Member("member3", 30, teamB)))))
+			.isInstanceOf(IllegalStateException.class);
+		assertThat(memberRepository.findByUsername("member3")).isEmpty();
+		assertThat(memberRepository.findById(member.getId())).isPresent();
+	}
+
+	@Test
+	public void importExportAndStats() throws IOException {
+		Path file = directory.resolve("members.csv");
+		List<String> lines = new ArrayList<>();
+		lines.add("username,age,team_name");
+		for (int i = 0; i < 60; i++) {
+			lines.add("import" + i + "," + (i % 10) + "," + (i % 5 == 4 ? "" : "importTeam" + i % 3));
+		}
+		Files.write(file, lines, StandardCharsets.UTF_8);
+
+		ImportReport report = memberImporter.importFile(file,
+			ImportOptions.builder().header(true).batchSize(7).build());
+		assertThat(report.getImported()).isEqualTo(60);
+		assertThat(report.getTeamsCreated()).isEqualTo(3);
+
+		// 멤버는 팀의 샤드에, ID 에는 그 샤드 번호가 들어 있다
+		for (int shard = 0; shard < SHARDS; shard++) {
+			int current = shard;
+			List<Long> misplaced = shard(shard).queryForList(
+				"select m.member_id from member m left join team t on m.team_id = t.team_id"
+					+ " where m.team_id is not null and t.team_id is null", Long.class);
+			assertThat(misplaced).isEmpty();
+			assertThat(shard(shard).queryForList("select member_id from member", Long.class))
+				.allMatch(id -> ShardIdGenerator.shardOf(id) == current);
+		}
+		assertThat(teamRepository.findAll()).extracting(Team::getName)
+			.containsExactlyInAnyOrder("importTeam0", "importTeam1", "importTeam2");
+
+		ExportReport exported = memberExporter.export(directory.resolve("export"),
+			ExportOptions.builder().partitions(2).parallelism(2).build());
+		assertThat(exported.getRows()).isEqualTo(60);
+		assertThat(exported.getExportedPartitions()).isEqualTo(2 * SHARDS);
+
+		// 전체 재집계도 샤드마다 GROUP BY 해서 모은다
+		teamStatsStore.markAllDirty();
+		assertThat(teamStatsReconciler.reconcileAll()).isTrue();
+		for (Team team : teamRepository.findAll()) {
+			int index = team.getName().charAt(team.getName().length() - 1) - '0';
+			List<Integer> ages = IntStream.range(0, 60).filter(i -> i % 5 != 4 && i % 3 == index)
+				.map(i -> i % 10).boxed().collect(Collectors.toList());
+			TeamStats stats = teamRepository.findTeamStats(team.getId());
+			assertThat(stats.getMemberCount()).isEqualTo(ages.size());
+			assertThat(stats.getAgeSum()).isEqualTo(ages.stream().mapToLong(Integer::longValue).sum());
+		}
+		assertThat(Stream.of(0, 1, 2).mapToLong(shard ->
+			shard(shard).queryForObject("select count(*) from member", Long.class)).sum()).isEqualTo(60);
+	}
+
+	@Test
+	public void uniqueTimeOrderedIds() throws Exception {
+		ShardIdGenerator generator = new ShardIdGenerator(3);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<List<Long>>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int shard = t;
+			futures.add(executor.submit(() -> {
+				List<Long> ids = new ArrayList<>();
+				for (int i = 0; i < 20_000; i++) {
+					ids.add(generator.next(shard));
+				}
+				return ids;
+			}));
+		}
+		Set<Long> all = new HashSet<>();
+		for (Future<List<Long>> future : futures) {
+			List<Long> ids = future.get();
+			assertThat(ids).isSorted();
+			all.addAll(ids);
+		}
+		executor.shutdown();
+		assertThat(all).hasSize(80_000);
+
+		// 샤드를 번갈아 써도 한 노드에서 만든 ID 는 증가한다
+		List<Long> mixed = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			mixed.add(generator.next(i % SHARDS));
+		}
+		assertThat(mixed).isSorted();
+
+		long id = generator.next(7);
+		assertThat(ShardIdGenerator.shardOf(id)).isEqualTo(7);
+		assertThat(ShardIdGenerator.nodeOf(id)).isEqualTo(3);
+		assertThat(ShardIdGenerator.timestampOf(id)).isBetween(
+			Instant.now().minusSeconds(60), Instant.now().plusSeconds(60));
+	}
+
+	private static List<String> usernames(IntStream indexes, int skip) {
+		return indexes.mapToObj(i -> "member" + i).sorted(Comparator.reverseOrder())
+			.skip(skip).limit(4).collect(Collectors.toList());
+	}
+
+	private JdbcTemplate shard(int shard) {
+		return new JdbcTemplate(shards.dataSource(shard));
+	}
+}
@@ -0,0 +1,83 @@
+package study.datajpa.stats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 스프링 컨텍스트 없이 트랜잭션 동기화만 직접 열고 닫는다.
+class TeamStatsStoreTest {
+
+	TeamStatsStore store = new TeamStatsStore();
+
+	@BeforeEach
+	public void setUp() {
+		store.reconciledAll(Collections.emptyList(), store.currentSequence());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	// DB 커밋 -> 재집계(새 행이 보임) -> afterCommit 순서여도 두 번 더해지지 않는다.
+	@Test
+	public void reconcileBetweenDbCommitAndAfterCommit() {
+		TransactionSynchronizationManager.initSynchronization();
+		store.memberAdded(1L, 10);
+
+		// DB 에는 이미 커밋되어 GROUP BY 가 새 멤버를 본 상태
+		store.reconciled(1L, new TeamStats(1L, 1, 10, 10, 10), store.currentSequence());
+		assertThat(store.get(1L)).isEmpty();
+
+		commit();
+		store.reconciled(1L, new TeamStats(1L, 1, 10, 10, 10), store.currentSequence());
+		assertThat(store.get(1L)).get().extracting(TeamStats::getMemberCount).isEqualTo(1L);
+	}
+
+	// 변경이 몇 건이든 트랜잭션마다 synchronization 은 하나
+	@Test
+	public void oneSynchronizationPerTransaction() {
+		TransactionSynchronizationManager.initSynchronization();
+		for (int i = 0; i < 10_000; i++) {
+			store.memberAdded((long) (i % 3), 20 + i % 10);
+		}
+		store.memberRemoved(0L, 25);
+		assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+		assertThat(store.get(0L)).get().extracting(TeamStats::getMemberCount).isEqualTo(0L);
+
+		commit();
+		TeamStats team1 = store.get(1L).get();
+		assertThat(team1.getMemberCount()).isEqualTo(3_333);
+		assertThat(team1.getMinAge()).isEqualTo(20);
+		assertThat(team1.getMaxAge()).isEqualTo(29);
+		// 0 명에서 시작했으므로 빠진 나이가 기존 min/max 인지 알 수 없다 -> 재집계 대상
+		assertThat(store.get(0L)).isEmpty();
+	}
+
+	@Test
+	public void rollbackDiscardsChanges() {
+		TransactionSynchronizationManager.initSynchronization();
+		store.memberAdded(1L, 10);
+		TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		assertThat(store.get(1L)).get().extracting(TeamStats::getMemberCount).isEqualTo(0L);
+		store.reconciled(1L, TeamStats.empty(1L), store.currentSequence());
+		assertThat(store.get(1L)).isPresent();
+	}
+
+	private void commit() {
+		TransactionSynchronizationUtils.triggerAfterCommit();
+		TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+}